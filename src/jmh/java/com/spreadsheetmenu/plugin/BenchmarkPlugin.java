@@ -0,0 +1,54 @@
+package com.spreadsheetmenu.plugin;
+
+import com.spreadsheetmenu.plugin.benchmark.StandIns;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.InvalidDescriptionException;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.logging.Level;
+
+/**
+ * The plugin, set up without a server: managers are created and the configuration
+ * in the given folder is loaded, but no commands, listeners or tasks are registered.
+ */
+public class BenchmarkPlugin extends SpreadsheetMenu {
+
+    private static final String DESCRIPTION = "name: SpreadsheetMenu\n"
+        + "version: benchmark\n"
+        + "main: " + BenchmarkPlugin.class.getName() + "\n"
+        + "api-version: '1.21'\n";
+
+    private BenchmarkPlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder) {
+        super(loader, description, dataFolder, new File(dataFolder, "SpreadsheetMenu.jar"));
+    }
+
+    /**
+     * Creates the plugin for a data folder prepared by MenuFiles
+     *
+     * @param dataFolder The plugin data folder
+     * @return The plugin with its configuration loaded and the stand-in placeholder resolver installed
+     */
+    public static BenchmarkPlugin create(Path dataFolder) {
+        if (Bukkit.getServer() == null) {
+            Bukkit.setServer(StandIns.server());
+        }
+
+        PluginDescriptionFile description;
+        try {
+            description = new PluginDescriptionFile(new StringReader(DESCRIPTION));
+        } catch (InvalidDescriptionException e) {
+            throw new IllegalStateException(e);
+        }
+
+        BenchmarkPlugin plugin = new BenchmarkPlugin(new JavaPluginLoader(Bukkit.getServer()), description, dataFolder.toFile());
+        // "Registered menu" for every file would dominate the load benchmarks
+        plugin.getLogger().setLevel(Level.WARNING);
+        plugin.loadManagers();
+        plugin.getPlaceholderService().setResolver(StandIns::resolvePlaceholder);
+        return plugin;
+    }
+}
@@ -0,0 +1,64 @@
+package com.spreadsheetmenu.plugin.benchmark;
+
+import com.spreadsheetmenu.plugin.BenchmarkPlugin;
+import com.spreadsheetmenu.plugin.condition.Condition;
+import com.spreadsheetmenu.plugin.condition.ConditionParser;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderService;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and evaluating show_condition expressions. Every evaluation uses a fresh
+ * render context, so placeholders are resolved through the stand-in resolver each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConditionBenchmark {
+
+    @Param({
+        "%player_has_permission_spreadsheetmenu.items.diamond%",
+        "%player_level% >= 20",
+        "(%vault_eco_balance% >= 500 && !%player_is_flying%) || %player_name% == Notch"
+    })
+    public String expression;
+
+    private Path dataFolder;
+    private PlaceholderService placeholderService;
+    private Player player;
+    private Condition condition;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("spm-bench");
+        MenuFiles.write(dataFolder, 0, 0, false, false);
+
+        BenchmarkPlugin plugin = BenchmarkPlugin.create(dataFolder);
+        placeholderService = plugin.getPlaceholderService();
+        player = StandIns.player("Bench");
+        condition = ConditionParser.parse(expression);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        MenuFiles.delete(dataFolder);
+    }
+
+    @Benchmark
+    public Condition parse() {
+        return ConditionParser.parse(expression);
+    }
+
+    @Benchmark
+    public boolean evaluate() {
+        return condition.test(placeholderService.createContext(player));
+    }
+}
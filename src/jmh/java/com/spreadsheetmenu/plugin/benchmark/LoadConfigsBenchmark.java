@@ -0,0 +1,53 @@
+package com.spreadsheetmenu.plugin.benchmark;
+
+import com.spreadsheetmenu.plugin.BenchmarkPlugin;
+import com.spreadsheetmenu.plugin.config.ConfigManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full configuration load over generated menu sets, from 10 files of 10 rows
+ * to 10k files of 100 rows (1M rows). With menuCache=true every load after the
+ * first reads the compiled templates from menu_cache.bin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadConfigsBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int files;
+
+    @Param({"10", "100"})
+    public int rowsPerFile;
+
+    @Param({"false", "true"})
+    public boolean menuCache;
+
+    private Path dataFolder;
+    private ConfigManager configManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("spm-bench");
+        MenuFiles.write(dataFolder, files, rowsPerFile, true, menuCache);
+        configManager = BenchmarkPlugin.create(dataFolder).getConfigManager();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        MenuFiles.delete(dataFolder);
+    }
+
+    @Benchmark
+    public boolean loadConfigs() {
+        return configManager.loadConfigs();
+    }
+}
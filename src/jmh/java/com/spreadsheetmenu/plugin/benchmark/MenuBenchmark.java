@@ -0,0 +1,104 @@
+package com.spreadsheetmenu.plugin.benchmark;
+
+import com.spreadsheetmenu.plugin.BenchmarkPlugin;
+import com.spreadsheetmenu.plugin.menu.MenuHolder;
+import com.spreadsheetmenu.plugin.menu.MenuManager;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening a menu (conditions, placeholders and item rendering) and dispatching clicks.
+ * Menus have one row per slot, or several prioritised rows per slot with rows=540.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MenuBenchmark {
+
+    @Param({"false", "true"})
+    public boolean dynamic;
+
+    @Param({"54", "540"})
+    public int rows;
+
+    private Path dataFolder;
+    private MenuManager menuManager;
+    private Player player;
+    private String menuId;
+    private MenuHolder holder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = Files.createTempDirectory("spm-bench");
+        MenuFiles.write(dataFolder, 1, rows, dynamic, false);
+
+        BenchmarkPlugin plugin = BenchmarkPlugin.create(dataFolder);
+        menuManager = plugin.getMenuManager();
+        player = StandIns.player("Bench");
+        menuId = MenuFiles.menuId(0);
+        menuManager.openMenu(player, menuId);
+        holder = (MenuHolder) menuManager.getSession(player).getInventory().getHolder();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        MenuFiles.delete(dataFolder);
+    }
+
+    @Benchmark
+    public boolean openMenu() {
+        return menuManager.openMenu(player, menuId);
+    }
+
+    @Benchmark
+    public int refreshDynamicSlots() {
+        return menuManager.refreshDynamicSlots(player);
+    }
+
+    /**
+     * Slot 0 holds a static item without a command
+     */
+    @Benchmark
+    public boolean clickWithoutCommand() {
+        return menuManager.handleMenuClick(player, 0);
+    }
+
+    /**
+     * The click listener's path for slot 0: the session comes from the inventory holder and a slot
+     * without any command returns before the click limits, so -prof gc should report no allocation.
+     * With dynamic=true and rows=540 commands are stacked on slot 0, so the click is rate limited instead.
+     */
+    @Benchmark
+    public boolean listenerClickWithoutCommand() {
+        return menuManager.handleMenuClick(player, holder, 0);
+    }
+
+    /**
+     * Slot 1 runs a [console] command with placeholders in the dynamic menu.
+     * Commands are deferred to the action queue, which is run as the next tick would.
+     */
+    @Benchmark
+    public boolean clickConsoleCommand() {
+        boolean clicked = menuManager.handleMenuClick(player, 1);
+        menuManager.getActionQueue().run();
+        return clicked;
+    }
+
+    /**
+     * Slot 2 runs a [player] command behind a show condition in the dynamic menu
+     */
+    @Benchmark
+    public boolean clickPlayerCommand() {
+        boolean clicked = menuManager.handleMenuClick(player, 2);
+        menuManager.getActionQueue().run();
+        return clicked;
+    }
+}
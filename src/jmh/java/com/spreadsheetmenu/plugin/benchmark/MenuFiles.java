@@ -0,0 +1,107 @@
+package com.spreadsheetmenu.plugin.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Generates plugin data folders with synthetic menu sets for the benchmarks
+ */
+public final class MenuFiles {
+
+    private static final String[] MATERIALS = { "STONE", "DIAMOND", "PAPER", "BOOK", "COMPASS", "GOLD_INGOT" };
+
+    private MenuFiles() {
+    }
+
+    /**
+     * Writes settings.csv, placeholders.csv, core_menus.csv and the given number of menu files
+     *
+     * @param dataFolder The folder to write to
+     * @param menus The number of menu files
+     * @param rowsPerMenu The number of item rows in each menu file
+     * @param dynamic Whether rows use placeholders, show conditions and commands, or are plain static items
+     * @param menuCache Whether the compiled menu cache is enabled
+     */
+    public static void write(Path dataFolder, int menus, int rowsPerMenu, boolean dynamic, boolean menuCache) throws IOException {
+        Path menusFolder = Files.createDirectories(dataFolder.resolve("menus"));
+
+        Files.writeString(dataFolder.resolve("settings.csv"), "setting,value,description\n"
+            + "async_placeholders,false,\n"
+            + "action_budget_micros,1000000000,\n" // Click benchmarks drain the action queue after every click
+            + "watch_files,false,\n"
+            + "menu_cache," + menuCache + ",\n");
+        Files.writeString(dataFolder.resolve("placeholders.csv"), "placeholder,thread_safe,cache_ttl\n");
+
+        try (BufferedWriter core = Files.newBufferedWriter(dataFolder.resolve("core_menus.csv"), StandardCharsets.UTF_8)) {
+            core.write("menu_id,menu_name,open_condition,permission,escapeable,refresh_interval\n");
+            for (int menu = 0; menu < menus; menu++) {
+                core.write(menuId(menu) + ",&8Menu " + menu + ",,,true,\n");
+            }
+        }
+
+        for (int menu = 0; menu < menus; menu++) {
+            writeMenu(menusFolder.resolve(menuId(menu) + ".csv"), rowsPerMenu, dynamic);
+        }
+    }
+
+    /**
+     * Writes one menu file. Rows fill the 54 slots in order and then stack on top of
+     * each other with increasing priority, like per-rank variants of the same button.
+     */
+    private static void writeMenu(Path file, int rows, boolean dynamic) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("slot,material,amount,name,lore,command,priority,show_condition\n");
+            for (int row = 0; row < rows; row++) {
+                int slot = row % 54;
+                int priority = row / 54;
+                String material = MATERIALS[row % MATERIALS.length];
+
+                if (!dynamic) {
+                    out.write(slot + "," + material + ",1,&fItem " + row + ",&7Line one|&7Line two,," + priority + ",\n");
+                    continue;
+                }
+
+                switch (row % 4) {
+                    case 0:
+                        out.write(slot + "," + material + ",1,&fItem " + row + ",&7Static lore,," + priority + ",\n");
+                        break;
+                    case 1:
+                        out.write(slot + "," + material + ",1,&e%player_name%,&7Balance: &a%vault_eco_balance%|&7Online: %server_online%,"
+                            + "[console] say %player_name% clicked " + row + "," + priority + ",\n");
+                        break;
+                    case 2:
+                        out.write(slot + "," + material + ",1,&bRank item,&7Level %player_level%,[player] spawn," + priority
+                            + ",\"%player_level% >= " + (row % 50) + " && !%player_is_flying%\"\n");
+                        break;
+                    default:
+                        out.write(slot + "," + material + ",1,&cClose,,[close]," + priority
+                            + ",\"%vault_eco_balance% > 1000 || %player_name% == Notch\"\n");
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a generated data folder
+     */
+    public static void delete(Path folder) throws IOException {
+        if (!Files.exists(folder)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    public static String menuId(int menu) {
+        return "menu_" + menu;
+    }
+}
@@ -0,0 +1,210 @@
+package com.spreadsheetmenu.plugin.benchmark;
+
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Minimal local stand-ins for the server, players, inventories and PlaceholderAPI.
+ * They are dynamic proxies that implement just enough behaviour for the menu code paths;
+ * every other method returns the default value of its return type.
+ */
+public final class StandIns {
+
+    private static final Logger LOGGER = Logger.getLogger("StandInServer");
+    private static final ItemFactory ITEM_FACTORY = proxy(ItemFactory.class, StandIns::itemFactory);
+
+    private StandIns() {
+    }
+
+    /**
+     * Placeholder values used instead of PlaceholderAPI
+     */
+    public static String resolvePlaceholder(Player player, String placeholder) {
+        switch (placeholder) {
+            case "%player_name%": return player.getName();
+            case "%player_level%": return "30";
+            case "%vault_eco_balance%": return "1520.75";
+            case "%server_online%": return "87";
+            case "%player_is_flying%": return "no";
+            default: return "value";
+        }
+    }
+
+    public static Server server() {
+        PluginManager pluginManager = proxy(PluginManager.class, (name, args) -> null);
+        BukkitScheduler scheduler = proxy(BukkitScheduler.class, (name, args) -> null);
+
+        return proxy(Server.class, (name, args) -> {
+            switch (name) {
+                case "getLogger": return LOGGER;
+                case "getName": return "StandInServer";
+                case "getVersion": return "benchmark";
+                case "getBukkitVersion": return "1.21.1-R0.1-SNAPSHOT";
+                case "getPluginManager": return pluginManager;
+                case "getScheduler": return scheduler;
+                case "getItemFactory": return ITEM_FACTORY;
+                case "isPrimaryThread": return true;
+                case "dispatchCommand": return true;
+                case "getCurrentTick": return (int) (System.nanoTime() / 50_000_000L); // 20 ticks per second
+                case "createInventory": return inventory((InventoryHolder) args[0], (Integer) args[1]);
+                default: return null;
+            }
+        });
+    }
+
+    public static Player player(String name) {
+        UUID uuid = UUID.nameUUIDFromBytes(name.getBytes());
+        return proxy(Player.class, (method, args) -> {
+            switch (method) {
+                case "getUniqueId": return uuid;
+                case "getName": return name;
+                case "isOnline": return true;
+                case "hasPermission": return true;
+                case "performCommand": return true;
+                default: return null;
+            }
+        });
+    }
+
+    public static Inventory inventory(InventoryHolder holder, int size) {
+        ItemStack[] contents = new ItemStack[size];
+        return proxy(Inventory.class, (name, args) -> {
+            switch (name) {
+                case "getHolder": return holder;
+                case "getSize": return size;
+                case "getItem": return contents[(Integer) args[0]];
+                case "setItem":
+                    contents[(Integer) args[0]] = (ItemStack) args[1];
+                    return null;
+                case "getContents": return contents.clone();
+                case "clear":
+                    Arrays.fill(contents, null);
+                    return null;
+                case "getViewers": return List.of();
+                default: return null;
+            }
+        });
+    }
+
+    private static Object itemFactory(String name, Object[] args) {
+        switch (name) {
+            case "getItemMeta": return itemMeta(new HashMap<>());
+            case "isApplicable": return true;
+            case "asMetaFor": return args[0] == null ? null : ((ItemMeta) args[0]).clone();
+            case "equals": return Objects.equals(state(args[0]), state(args[1]));
+            default: return null;
+        }
+    }
+
+    /**
+     * ItemMeta backed by a map of its display name and lore
+     */
+    private static ItemMeta itemMeta(Map<String, Object> state) {
+        return proxy(ItemMeta.class, (name, args) -> {
+            switch (name) {
+                case "hasDisplayName": return state.containsKey("name");
+                case "getDisplayName": return state.get("name");
+                case "setDisplayName":
+                    state.put("name", args[0]);
+                    return null;
+                case "hasLore": return state.containsKey("lore");
+                case "getLore": return state.get("lore");
+                case "setLore":
+                    state.put("lore", args[0] == null ? null : new ArrayList<>((List<?>) args[0]));
+                    return null;
+                case "clone": return itemMeta(new HashMap<>(state));
+                case "__state": return state;
+                default: return null;
+            }
+        });
+    }
+
+    private static Map<?, ?> state(Object meta) {
+        if (meta == null) {
+            return Map.of();
+        }
+        Handler handler = (Handler) Proxy.getInvocationHandler(meta);
+        return (Map<?, ?>) handler.answer.apply("__state", new Object[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Answer answer) {
+        return (T) Proxy.newProxyInstance(StandIns.class.getClassLoader(), new Class<?>[] { type },
+            new Handler(answer));
+    }
+
+    @FunctionalInterface
+    private interface Answer {
+        Object apply(String methodName, Object[] args);
+    }
+
+    /**
+     * Dispatches by method name, answers the Object methods by identity
+     * (or by state for item metas) and fills in defaults for primitive return types
+     */
+    private static final class Handler implements InvocationHandler {
+        private final Answer answer;
+
+        Handler(Answer answer) {
+            this.answer = answer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "equals":
+                    if (method.getParameterCount() == 1) {
+                        Object other = args[0];
+                        if (proxy instanceof ItemMeta && other instanceof ItemMeta) {
+                            return state(proxy).equals(state(other));
+                        }
+                        return proxy == other;
+                    }
+                    break;
+                case "hashCode":
+                    if (method.getParameterCount() == 0) {
+                        return proxy instanceof ItemMeta ? state(proxy).hashCode() : System.identityHashCode(proxy);
+                    }
+                    break;
+                case "toString":
+                    if (method.getParameterCount() == 0) {
+                        return "StandIn" + Arrays.toString(proxy.getClass().getInterfaces());
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            Object result = answer.apply(method.getName(), args);
+            if (result == null && method.getReturnType().isPrimitive()) {
+                return defaultValue(method.getReturnType());
+            }
+            return result;
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0D;
+        if (type == float.class) return 0F;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return '\0';
+        return null;
+    }
+}
@@ -2,39 +2,83 @@ package com.spreadsheetmenu.plugin;
 
 import com.spreadsheetmenu.plugin.commands.SpreadsheetMenuCommand;
 import com.spreadsheetmenu.plugin.config.ConfigManager;
+import com.spreadsheetmenu.plugin.config.MenuFileWatcher;
+import com.spreadsheetmenu.plugin.config.MenuSourcePoller;
 import com.spreadsheetmenu.plugin.listeners.MenuListener;
 import com.spreadsheetmenu.plugin.menu.MenuManager;
+import com.spreadsheetmenu.plugin.menu.MenuRefresher;
+import com.spreadsheetmenu.plugin.metrics.MetricsExporter;
+import com.spreadsheetmenu.plugin.metrics.MetricsRegistry;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderService;
 import org.bukkit.permissions.Permission;
 import org.bukkit.permissions.PermissionDefault;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
 
 public class SpreadsheetMenu extends JavaPlugin {
     
     private static SpreadsheetMenu instance;
     private ConfigManager configManager;
     private MenuManager menuManager;
+    private PlaceholderService placeholderService;
+    private MenuRefresher menuRefresher;
+    private MenuFileWatcher menuFileWatcher;
+    private MenuSourcePoller menuSourcePoller;
+    private MetricsRegistry metrics;
+    private MetricsExporter metricsExporter;
+    
+    public SpreadsheetMenu() {
+        super();
+    }
+    
+    /**
+     * Creates the plugin outside of a running server. Only used by the benchmarks.
+     */
+    protected SpreadsheetMenu(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
     
     @Override
     public void onEnable() {
         instance = this;
         
-        // Create data folder if it doesn't exist
-        if (!getDataFolder().exists()) {
-            getDataFolder().mkdirs();
-        }
-        
-        // Initialize managers
-        configManager = new ConfigManager(this);
-        menuManager = new MenuManager(this);
-        
-        // Load configurations
-        boolean configLoaded = configManager.loadConfigs();
+        // Initialize managers and load configurations
+        boolean configLoaded = loadManagers();
         
         // Register commands
         getCommand("spreadsheetmenu").setExecutor(new SpreadsheetMenuCommand(this));
         
         // Register listeners
         getServer().getPluginManager().registerEvents(new MenuListener(this), this);
+        getServer().getPluginManager().registerEvents(menuManager.getPrerenderer(), this);
+        
+        // Start the shared refresh task for menus with a refresh_interval
+        menuRefresher = new MenuRefresher(this);
+        menuRefresher.start();
+        
+        // Start the queue that spreads bulk opens over several ticks
+        menuManager.getOpenQueue().start();
+        
+        // Start the queue that runs click actions left over when a tick's action budget ran out
+        menuManager.getActionQueue().start();
+        
+        // Watch the menu files, or poll the menu database, so edits are applied without closing open menus
+        if (configManager.getSettings().getBoolean("watch_files", true)) {
+            if (configManager.isFileBased()) {
+                menuFileWatcher = new MenuFileWatcher(this);
+                menuFileWatcher.start();
+            } else {
+                menuSourcePoller = new MenuSourcePoller(this);
+                menuSourcePoller.start();
+            }
+        }
+        
+        // Periodically export the metrics for Prometheus if enabled
+        metricsExporter = new MetricsExporter(this);
+        metricsExporter.start();
         
         // Register common permissions dynamically
         registerCommonPermissions();
@@ -42,6 +86,31 @@ public class SpreadsheetMenu extends JavaPlugin {
         getLogger().info("SpreadsheetMenu has been enabled!");
     }
     
+    /**
+     * Creates the managers and loads the configuration. Kept apart from the commands,
+     * listeners and tasks of onEnable so the benchmarks can run it without a server.
+     * 
+     * @return true if all configuration files are valid
+     */
+    boolean loadManagers() {
+        // Create data folder if it doesn't exist
+        if (!getDataFolder().exists()) {
+            getDataFolder().mkdirs();
+        }
+        
+        // Initialize managers
+        metrics = new MetricsRegistry();
+        configManager = new ConfigManager(this);
+        menuManager = new MenuManager(this);
+        placeholderService = new PlaceholderService(this);
+        metrics.setOpenSessions(menuManager::getOpenMenuCount);
+        metrics.setActionQueueDepth(menuManager.getActionQueue()::size);
+        metrics.setLoadedTemplates(configManager.getTemplateCache()::size, configManager.getTemplateCache()::getEstimatedBytes);
+        
+        // Load configurations
+        return configManager.loadConfigs();
+    }
+    
     /**
      * Registers common permissions dynamically
      * This eliminates the need to define these permissions in plugin.yml
@@ -94,9 +163,29 @@ public class SpreadsheetMenu extends JavaPlugin {
     @Override
     public void onDisable() {
         // Clean up resources
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+        }
+        if (menuFileWatcher != null) {
+            menuFileWatcher.stop();
+        }
+        if (menuSourcePoller != null) {
+            menuSourcePoller.stop();
+        }
+        if (menuRefresher != null) {
+            menuRefresher.stop();
+        }
         if (menuManager != null) {
+            menuManager.getOpenQueue().stop();
+            menuManager.getActionQueue().stop();
             menuManager.closeAllMenus();
         }
+        if (placeholderService != null) {
+            placeholderService.shutdown();
+        }
+        if (configManager != null) {
+            configManager.close();
+        }
         
         getLogger().info("SpreadsheetMenu has been disabled!");
     }
@@ -112,4 +201,12 @@ public class SpreadsheetMenu extends JavaPlugin {
     public MenuManager getMenuManager() {
         return menuManager;
     }
+    
+    public PlaceholderService getPlaceholderService() {
+        return placeholderService;
+    }
+    
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
 } 
\ No newline at end of file
@@ -2,6 +2,10 @@ package com.spreadsheetmenu.plugin.commands;
 
 import com.spreadsheetmenu.plugin.SpreadsheetMenu;
 import com.spreadsheetmenu.plugin.menu.MenuInfo;
+import com.spreadsheetmenu.plugin.metrics.LatencyHistogram;
+import com.spreadsheetmenu.plugin.metrics.MenuMetrics;
+import com.spreadsheetmenu.plugin.metrics.MetricsRegistry;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderService;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -11,6 +15,7 @@ import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -131,12 +136,111 @@ public class SpreadsheetMenuCommand implements CommandExecutor, TabCompleter {
                 sender.sendMessage(ChatColor.YELLOW + "TIP: Use /" + label + " open <menu_id> to open any menu.");
                 return true;
                 
+            case "stats":
+                // Bypass permission check for OP players
+                if (!sender.isOp() && !sender.hasPermission("spreadsheetmenu.stats")) {
+                    sender.sendMessage(ChatColor.RED + "You don't have permission to view menu statistics.");
+                    return true;
+                }
+                
+                if (args.length >= 2) {
+                    sendMenuStats(sender, args[1]);
+                } else {
+                    sendStats(sender);
+                }
+                return true;
+                
             default:
                 sendHelp(sender);
                 return true;
         }
     }
     
+    /**
+     * Shows the global statistics and the most opened menus
+     */
+    private void sendStats(CommandSender sender) {
+        MetricsRegistry metrics = plugin.getMetrics();
+        PlaceholderService placeholderService = plugin.getPlaceholderService();
+        long hits = placeholderService.getCacheHits();
+        long lookups = hits + placeholderService.getCacheMisses();
+        
+        sender.sendMessage(ChatColor.GREEN + "=== SpreadsheetMenu Statistics ===");
+        sender.sendMessage(ChatColor.YELLOW + "Open menus: " + ChatColor.WHITE + metrics.getOpenSessions()
+            + ChatColor.YELLOW + "  Queued opens: " + ChatColor.WHITE + plugin.getMenuManager().getOpenQueue().size());
+        sender.sendMessage(ChatColor.YELLOW + "Queued actions: " + ChatColor.WHITE + metrics.getActionQueueDepth()
+            + ChatColor.YELLOW + "  Max: " + ChatColor.WHITE + metrics.getActionQueueMaxDepth()
+            + ChatColor.YELLOW + "  Delay: " + formatLatency(metrics.getActionDelay()));
+        long prerenders = metrics.getPrerenders();
+        sender.sendMessage(ChatColor.YELLOW + "Pre-rendered menus: " + ChatColor.WHITE + prerenders
+            + ChatColor.YELLOW + "  Used: " + ChatColor.WHITE + metrics.getPrerenderHits()
+            + (prerenders > 0 ? " (" + (metrics.getPrerenderHits() * 100 / prerenders) + "%)" : ""));
+        if (plugin.getConfigManager().isLazy()) {
+            sender.sendMessage(ChatColor.YELLOW + "Loaded menus: " + ChatColor.WHITE + metrics.getLoadedTemplates()
+                + " (~" + (metrics.getLoadedTemplateBytes() / 1024) + " KiB)"
+                + ChatColor.YELLOW + "  Loads: " + ChatColor.WHITE + metrics.getTemplateLoads()
+                + ChatColor.YELLOW + "  Evicted: " + ChatColor.WHITE + metrics.getTemplateEvictions());
+        }
+        sender.sendMessage(ChatColor.YELLOW + "Config loads: " + formatLatency(metrics.getConfigLoadLatency()));
+        sender.sendMessage(ChatColor.YELLOW + "Placeholder calls: " + formatLatency(metrics.getPlaceholderLatency()));
+        sender.sendMessage(ChatColor.YELLOW + "Placeholder cache: " + ChatColor.WHITE + hits + "/" + lookups + " hits"
+            + (lookups > 0 ? " (" + (hits * 100 / lookups) + "%)" : ""));
+        
+        List<MenuMetrics> menus = new ArrayList<>(metrics.getMenus());
+        if (menus.isEmpty()) {
+            return;
+        }
+        
+        menus.sort(Comparator.comparingLong(MenuMetrics::getOpens).reversed());
+        sender.sendMessage(ChatColor.GREEN + "Most opened menus:");
+        for (MenuMetrics menu : menus.subList(0, Math.min(10, menus.size()))) {
+            sender.sendMessage(ChatColor.YELLOW + "- " + menu.getMenuId() + ChatColor.GRAY
+                + " opens " + menu.getOpens() + ", denied " + menu.getDeniedOpens()
+                + ", clicks " + menu.getClicks() + ", p99 open " + formatNanos(menu.getOpenLatency().getPercentileNanos(0.99)));
+        }
+        sender.sendMessage(ChatColor.YELLOW + "TIP: Use /spm stats <menu_id> for the details of a menu.");
+    }
+    
+    /**
+     * Shows the statistics of a single menu
+     */
+    private void sendMenuStats(CommandSender sender, String menuId) {
+        MenuMetrics menu = plugin.getMetrics().getMenu(menuId);
+        if (menu == null) {
+            sender.sendMessage(ChatColor.RED + "No statistics recorded for menu: " + menuId);
+            return;
+        }
+        
+        sender.sendMessage(ChatColor.GREEN + "=== Statistics of " + menuId + " ===");
+        sender.sendMessage(ChatColor.YELLOW + "Opens: " + ChatColor.WHITE + menu.getOpens()
+            + ChatColor.YELLOW + "  Denied: " + ChatColor.WHITE + menu.getDeniedOpens()
+            + ChatColor.YELLOW + "  Reopen loops: " + ChatColor.WHITE + menu.getReopenLoops()
+            + ChatColor.YELLOW + "  Broken: " + ChatColor.WHITE + menu.getBrokenReopenLoops());
+        sender.sendMessage(ChatColor.YELLOW + "Clicks: " + ChatColor.WHITE + menu.getClicks()
+            + ChatColor.YELLOW + "  Dropped: " + ChatColor.WHITE + menu.getDroppedClicks());
+        sender.sendMessage(ChatColor.YELLOW + "Open: " + formatLatency(menu.getOpenLatency()));
+        sender.sendMessage(ChatColor.YELLOW + "Render: " + formatLatency(menu.getRenderLatency()));
+        sender.sendMessage(ChatColor.YELLOW + "Click: " + formatLatency(menu.getClickLatency()));
+    }
+    
+    private static String formatLatency(LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) {
+            return ChatColor.GRAY + "none";
+        }
+        return ChatColor.WHITE + "" + histogram.getCount() + ChatColor.GRAY
+            + " (mean " + formatNanos(histogram.getMeanNanos())
+            + ", p50 " + formatNanos(histogram.getPercentileNanos(0.5))
+            + ", p99 " + formatNanos(histogram.getPercentileNanos(0.99))
+            + ", max " + formatNanos(histogram.getMaxNanos()) + ")";
+    }
+    
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000_000) {
+            return String.format("%.1fµs", nanos / 1_000.0);
+        }
+        return String.format("%.2fms", nanos / 1_000_000.0);
+    }
+    
     /**
      * Opens a menu for players matching the given selector
      * 
@@ -184,14 +288,15 @@ public class SpreadsheetMenuCommand implements CommandExecutor, TabCompleter {
                 return true;
             }
             
+            // Spread the opens over the next ticks instead of rendering them all at once
             int successCount = 0;
             for (Player target : targets) {
-                if (plugin.getMenuManager().openMenu(target, menuId)) {
+                if (plugin.getMenuManager().getOpenQueue().enqueue(target, menuId)) {
                     successCount++;
                 }
             }
             
-            sender.sendMessage(ChatColor.GREEN + "Opened menu '" + menuId + "' for " + successCount + " player(s).");
+            sender.sendMessage(ChatColor.GREEN + "Opening menu '" + menuId + "' for " + successCount + " player(s).");
             return true;
         } else {
             // Process as a player name
@@ -216,6 +321,7 @@ public class SpreadsheetMenuCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.YELLOW + "/spm forcereload" + ChatColor.GRAY + " - Force reload all menu files from resources");
         sender.sendMessage(ChatColor.YELLOW + "/spm open <menu_id> [player|selector]" + ChatColor.GRAY + " - Open a menu for player(s)");
         sender.sendMessage(ChatColor.YELLOW + "/spm list" + ChatColor.GRAY + " - List all available menus");
+        sender.sendMessage(ChatColor.YELLOW + "/spm stats [menu_id]" + ChatColor.GRAY + " - Show menu timings and counters");
     }
     
     @Override
@@ -228,13 +334,14 @@ public class SpreadsheetMenuCommand implements CommandExecutor, TabCompleter {
             subCommands.add("forcereload");
             subCommands.add("open");
             subCommands.add("list");
+            subCommands.add("stats");
             
             for (String subCommand : subCommands) {
                 if (subCommand.startsWith(args[0].toLowerCase())) {
                     completions.add(subCommand);
                 }
             }
-        } else if (args.length == 2 && args[0].equalsIgnoreCase("open")) {
+        } else if (args.length == 2 && (args[0].equalsIgnoreCase("open") || args[0].equalsIgnoreCase("stats"))) {
             Map<String, MenuInfo> menus = plugin.getConfigManager().getMenuInfoMap();
             
             completions = menus.keySet().stream()
@@ -0,0 +1,21 @@
+package com.spreadsheetmenu.plugin.condition;
+
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderContext;
+
+/**
+ * A compiled show/open condition.
+ * Conditions are parsed once by the ConditionParser when menus are loaded;
+ * evaluating one only resolves the placeholders it actually reaches.
+ */
+@FunctionalInterface
+public interface Condition {
+    
+    Condition ALWAYS = context -> true;
+    Condition NEVER = context -> false;
+    
+    /**
+     * @param context The placeholder context of the player the condition is checked for
+     * @return true if the condition is met
+     */
+    boolean test(PlaceholderContext context);
+}
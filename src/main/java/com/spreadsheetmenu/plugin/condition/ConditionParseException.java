@@ -0,0 +1,11 @@
+package com.spreadsheetmenu.plugin.condition;
+
+/**
+ * Thrown when a condition expression cannot be parsed
+ */
+public class ConditionParseException extends IllegalArgumentException {
+    
+    public ConditionParseException(String message, String expression, int position) {
+        super(message + " at position " + position + " in: " + expression);
+    }
+}
@@ -0,0 +1,344 @@
+package com.spreadsheetmenu.plugin.condition;
+
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderText;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses show_condition / open_condition expressions into a tree of Conditions.
+ *
+ * Supported syntax:
+ * - Comparisons: ==, !=, >, >=, <, <= (numeric if both sides are numbers, otherwise text)
+ * - Logic: &&, ||, ! and parentheses, evaluated with short-circuiting
+ * - Operands: %placeholders%, plain words, numbers and 'quoted' or "quoted" text
+ * - A single operand is true if it is "true" or "yes" (ignoring case)
+ * - %player_has_permission_<node>% on its own, or compared with true/yes/false/no, is checked
+ *   with Player#hasPermission directly instead of going through PlaceholderAPI
+ *
+ * Example: (%vault_eco_balance% >= 500 && !%player_is_flying%) || %player_name% == Notch
+ */
+public final class ConditionParser {
+
+    /** Placeholder prefix of permission checks that are compiled into Player#hasPermission calls */
+    public static final String PERMISSION_PREFIX = "player_has_permission_";
+
+    private final String expression;
+    private int position;
+
+    private ConditionParser(String expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Parses a condition expression
+     *
+     * @param expression The expression to parse
+     * @return The compiled condition, or Condition.ALWAYS if the expression is empty
+     * @throws ConditionParseException if the expression is not valid
+     */
+    public static Condition parse(String expression) {
+        if (expression == null || expression.isBlank()) {
+            return Condition.ALWAYS;
+        }
+
+        ConditionParser parser = new ConditionParser(expression);
+        Condition condition = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.position < expression.length()) {
+            throw parser.error("Unexpected '" + expression.charAt(parser.position) + "'");
+        }
+        return condition;
+    }
+
+    /**
+     * @return The permission nodes the expression checks with %player_has_permission_<node>%
+     */
+    public static Set<String> getPermissions(String expression) {
+        Set<String> permissions = new LinkedHashSet<>();
+        for (String identifier : PlaceholderText.of(expression).getIdentifiers()) {
+            if (identifier.startsWith(PERMISSION_PREFIX) && identifier.length() > PERMISSION_PREFIX.length()) {
+                permissions.add(identifier.substring(PERMISSION_PREFIX.length()));
+            }
+        }
+        return permissions;
+    }
+
+    /**
+     * @return The identifiers of the placeholders in the text that are resolved through PlaceholderAPI,
+     *         leaving out the permission checks
+     */
+    public static List<String> getPlaceholderIdentifiers(String text) {
+        List<String> identifiers = new ArrayList<>();
+        for (String identifier : PlaceholderText.of(text).getIdentifiers()) {
+            if (!identifier.startsWith(PERMISSION_PREFIX)) {
+                identifiers.add(identifier);
+            }
+        }
+        return identifiers;
+    }
+
+    private Condition parseOr() {
+        Condition left = parseAnd();
+        while (consume("||")) {
+            Condition a = left;
+            Condition b = parseAnd();
+            left = context -> a.test(context) || b.test(context);
+        }
+        return left;
+    }
+
+    private Condition parseAnd() {
+        Condition left = parseUnary();
+        while (consume("&&")) {
+            Condition a = left;
+            Condition b = parseUnary();
+            left = context -> a.test(context) && b.test(context);
+        }
+        return left;
+    }
+
+    private Condition parseUnary() {
+        skipWhitespace();
+        if (peek() == '!' && peek(1) != '=') {
+            position++;
+            Condition inner = parseUnary();
+            return context -> !inner.test(context);
+        }
+        return parsePrimary();
+    }
+
+    private Condition parsePrimary() {
+        skipWhitespace();
+        if (peek() == '(') {
+            position++;
+            Condition inner = parseOr();
+            if (!consume(")")) {
+                throw error("Missing ')'");
+            }
+            return inner;
+        }
+
+        Operand left = parseOperand();
+        Comparison comparison = parseComparison();
+        if (comparison == null) {
+            if (left.permission != null) {
+                return hasPermission(left.permission);
+            }
+            if (!left.text.isDynamic()) {
+                return left.isTruthy(null) ? Condition.ALWAYS : Condition.NEVER;
+            }
+            return left::isTruthy;
+        }
+
+        Operand right = parseOperand();
+        return compile(left, comparison, right);
+    }
+
+    private Comparison parseComparison() {
+        skipWhitespace();
+        if (consume("==")) return Comparison.EQUAL;
+        if (consume("!=")) return Comparison.NOT_EQUAL;
+        if (consume(">=")) return Comparison.GREATER_OR_EQUAL;
+        if (consume("<=")) return Comparison.LESS_OR_EQUAL;
+        if (consume(">")) return Comparison.GREATER;
+        if (consume("<")) return Comparison.LESS;
+        if (consume("=")) return Comparison.EQUAL;
+        return null;
+    }
+
+    private Operand parseOperand() {
+        skipWhitespace();
+        int start = position;
+        char c = peek();
+
+        // Quoted text
+        if (c == '\'' || c == '"') {
+            int end = expression.indexOf(c, position + 1);
+            if (end < 0) {
+                throw error("Unterminated quote");
+            }
+            position = end + 1;
+            return new Operand(PlaceholderText.of(expression.substring(start + 1, end)));
+        }
+
+        // Bare word made of plain characters and %placeholders%
+        while (position < expression.length()) {
+            c = expression.charAt(position);
+            if (c == '%') {
+                int end = expression.indexOf('%', position + 1);
+                if (end < 0) {
+                    throw error("Unterminated placeholder");
+                }
+                position = end + 1;
+            } else if (Character.isWhitespace(c) || "()!<>=&|".indexOf(c) >= 0) {
+                break;
+            } else {
+                position++;
+            }
+        }
+
+        if (position == start) {
+            throw error(position < expression.length() ? "Unexpected '" + c + "'" : "Unexpected end of expression");
+        }
+        return new Operand(PlaceholderText.of(expression.substring(start, position)));
+    }
+
+    private static Condition compile(Operand left, Comparison comparison, Operand right) {
+        // A permission compared with a boolean: check the permission directly
+        Condition permission = comparePermission(left, comparison, right);
+        if (permission == null) {
+            permission = comparePermission(right, comparison, left);
+        }
+        if (permission != null) {
+            return permission;
+        }
+        
+        // Both sides static: the result never changes
+        if (!left.text.isDynamic() && !right.text.isDynamic()) {
+            boolean result = comparison.test(left.text.getText(), left.number, right.text.getText(), right.number);
+            return result ? Condition.ALWAYS : Condition.NEVER;
+        }
+
+        return context -> {
+            String l = left.resolve(context);
+            String r = right.resolve(context);
+            double ln = left.text.isDynamic() ? parseNumber(l) : left.number;
+            double rn = right.text.isDynamic() ? parseNumber(r) : right.number;
+            return comparison.test(l, ln, r, rn);
+        };
+    }
+
+    private static Condition hasPermission(String permission) {
+        return context -> context.getPlayer().hasPermission(permission);
+    }
+
+    /**
+     * @return The permission check, or null if the operands are not a permission and a boolean
+     */
+    private static Condition comparePermission(Operand permission, Comparison comparison, Operand value) {
+        if (permission.permission == null || value.text.isDynamic()
+                || (comparison != Comparison.EQUAL && comparison != Comparison.NOT_EQUAL)) {
+            return null;
+        }
+
+        String text = value.text.getText().trim();
+        boolean expected;
+        if (text.equalsIgnoreCase("true") || text.equalsIgnoreCase("yes")) {
+            expected = true;
+        } else if (text.equalsIgnoreCase("false") || text.equalsIgnoreCase("no")) {
+            expected = false;
+        } else {
+            return null;
+        }
+
+        Condition check = hasPermission(permission.permission);
+        if (expected == (comparison == Comparison.EQUAL)) {
+            return check;
+        }
+        return context -> !check.test(context);
+    }
+
+    private boolean consume(String token) {
+        skipWhitespace();
+        if (expression.startsWith(token, position)) {
+            position += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private char peek() {
+        return peek(0);
+    }
+
+    private char peek(int offset) {
+        int index = position + offset;
+        return index < expression.length() ? expression.charAt(index) : '\0';
+    }
+
+    private void skipWhitespace() {
+        while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+            position++;
+        }
+    }
+
+    private ConditionParseException error(String message) {
+        return new ConditionParseException(message, expression, position);
+    }
+
+    /**
+     * Parses a number without throwing, returning NaN if the text is not numeric
+     */
+    static double parseNumber(String text) {
+        if (text.isEmpty()) {
+            return Double.NaN;
+        }
+        char first = text.charAt(0);
+        if (!Character.isDigit(first) && first != '-' && first != '+' && first != '.') {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * A leaf of the expression: literal text or text with placeholders
+     */
+    private static final class Operand {
+        private final PlaceholderText text;
+        private final double number;
+        private final String permission; // Set if the operand is only a permission placeholder
+
+        Operand(PlaceholderText text) {
+            this.text = text;
+            this.number = text.isDynamic() ? Double.NaN : parseNumber(text.getText().trim());
+            
+            List<String> identifiers = text.getIdentifiers();
+            String identifier = identifiers.size() == 1 ? identifiers.get(0) : "";
+            this.permission = identifier.startsWith(PERMISSION_PREFIX) && identifier.length() > PERMISSION_PREFIX.length()
+                    && text.getText().trim().equals("%" + identifier + "%")
+                ? identifier.substring(PERMISSION_PREFIX.length())
+                : null;
+        }
+
+        String resolve(PlaceholderContext context) {
+            return text.resolve(context).trim();
+        }
+
+        boolean isTruthy(PlaceholderContext context) {
+            String value = resolve(context);
+            return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes");
+        }
+    }
+
+    private enum Comparison {
+        EQUAL, NOT_EQUAL, GREATER, GREATER_OR_EQUAL, LESS, LESS_OR_EQUAL;
+
+        boolean test(String left, double leftNumber, String right, double rightNumber) {
+            int result;
+            if (!Double.isNaN(leftNumber) && !Double.isNaN(rightNumber)) {
+                result = Double.compare(leftNumber, rightNumber);
+            } else if (this == EQUAL || this == NOT_EQUAL) {
+                result = left.equalsIgnoreCase(right) ? 0 : 1;
+            } else {
+                result = left.compareToIgnoreCase(right);
+            }
+
+            switch (this) {
+                case EQUAL: return result == 0;
+                case NOT_EQUAL: return result != 0;
+                case GREATER: return result > 0;
+                case GREATER_OR_EQUAL: return result >= 0;
+                case LESS: return result < 0;
+                default: return result <= 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.spreadsheetmenu.plugin.config;
+
+import com.spreadsheetmenu.plugin.menu.MenuItem;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+/**
+ * A large CSV data file whose rows fill a range of slots of a menu, one page at a time.
+ * Loading only builds an index of the byte offset at which each page starts; a page is
+ * read from the file and compiled when it is first shown, and the most recently used
+ * pages are kept in memory. Memory use therefore depends on the page size, not on the
+ * number of rows in the file. When the file changes, it is indexed again on a worker
+ * thread while the pages read before are still shown.
+ *
+ * Rows use the item columns of menu files (material, amount, name, lore, command,
+ * show_condition); there is no slot column.
+ */
+public class Catalog {
+
+    private static final int CACHED_PAGES = 16;
+    private static final MenuItem[] EMPTY_PAGE = new MenuItem[0];
+
+    private final String menuId;
+    private final Path file;
+    private final int[] slots;
+    private final int[] slotIndexes;
+    private final MenuCompiler compiler;
+    private final Logger logger;
+    private final Map<Integer, MenuItem[]> pages;
+
+    private String[] header;
+    private long[] pageOffsets = new long[0];
+    private int rowCount;
+    private long size;
+    private long modified;
+    private boolean indexing; // A changed file is being indexed again on a worker thread
+
+    /**
+     * @param slots The slots the rows of a page are shown in, in order
+     */
+    Catalog(String menuId, Path file, int[] slots, MenuCompiler compiler, Logger logger) {
+        this.menuId = menuId;
+        this.file = file;
+        this.slots = slots.clone();
+        this.slotIndexes = new int[MenuCompiler.INVENTORY_SIZE];
+        Arrays.fill(slotIndexes, -1);
+        for (int i = 0; i < slots.length; i++) {
+            slotIndexes[slots[i]] = i;
+        }
+        this.compiler = compiler;
+        this.logger = logger;
+        this.pages = new LinkedHashMap<>(CACHED_PAGES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, MenuItem[]> eldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+    }
+
+    /**
+     * Scans the file and records where each page starts. Safe to call from worker threads;
+     * pages can be read while the file is scanned.
+     */
+    void index() throws IOException {
+        long fileSize = Files.size(file);
+        long fileModified = Files.getLastModifiedTime(file).toMillis();
+
+        Indexer indexer = new Indexer(slots.length);
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    indexer.accept(buffer[i]);
+                }
+            }
+        }
+        indexer.endRow();
+
+        String[] columns = parseHeader(indexer.header.toString(StandardCharsets.UTF_8));
+        if (!Arrays.asList(columns).contains("material")) {
+            throw new IOException("missing required column (material)");
+        }
+
+        long[] offsets = indexer.pageOffsets.stream().mapToLong(Long::longValue).toArray();
+        synchronized (this) {
+            this.header = columns;
+            this.pageOffsets = offsets;
+            this.rowCount = indexer.rows;
+            this.size = fileSize;
+            this.modified = fileModified;
+            pages.clear();
+        }
+    }
+
+    private static String[] parseHeader(String line) throws IOException {
+        if (line.startsWith("\uFEFF")) {
+            line = line.substring(1); // Byte order mark written by some spreadsheet programs
+        }
+        try (CSVParser parser = CSVParser.parse(line, CSVFormat.DEFAULT.withTrim())) {
+            Iterator<CSVRecord> iterator = parser.iterator();
+            if (!iterator.hasNext()) {
+                throw new IOException("the file is empty");
+            }
+            List<String> columns = new ArrayList<>();
+            for (String column : iterator.next()) {
+                columns.add(column.toLowerCase(Locale.ROOT));
+            }
+            return columns.toArray(new String[0]);
+        }
+    }
+
+    /**
+     * Gets the items of a page, reading and compiling them if the page is not cached.
+     * If the file changed since it was indexed, it is indexed again on a worker thread;
+     * until then cached pages are shown as they were and other pages are empty.
+     *
+     * @param page The page number, starting at 0
+     * @return The items of the page in slot order; entries are null for invalid rows
+     *         and the array is shorter than the page on the last page
+     */
+    public synchronized MenuItem[] getPage(int page) {
+        MenuItem[] items = pages.get(page);
+        if (items != null) {
+            return items;
+        }
+
+        try {
+            if (indexing) {
+                return EMPTY_PAGE;
+            }
+            if (Files.size(file) != size || Files.getLastModifiedTime(file).toMillis() != modified) {
+                reindex();
+                return EMPTY_PAGE;
+            }
+            if (page < 0 || page >= pageOffsets.length) {
+                return EMPTY_PAGE;
+            }
+            items = readPage(page);
+        } catch (IOException e) {
+            logger.warning("Error reading catalog " + file.getFileName() + " of menu " + menuId + ": " + e.getMessage());
+            return EMPTY_PAGE;
+        }
+
+        pages.put(page, items);
+        return items;
+    }
+
+    /**
+     * Indexes the changed file on a worker thread
+     */
+    private void reindex() {
+        indexing = true;
+        CompletableFuture.runAsync(() -> {
+            try {
+                index();
+            } catch (IOException e) {
+                logger.warning("Error indexing catalog " + file.getFileName() + " of menu " + menuId + ": " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    indexing = false;
+                }
+            }
+        });
+    }
+
+    private MenuItem[] readPage(int page) throws IOException {
+        int count = Math.min(slots.length, rowCount - page * slots.length);
+        MenuItem[] items = new MenuItem[count];
+        Set<String> permissions = new HashSet<>();
+        List<String> warnings = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ).position(pageOffsets[page]);
+             CSVParser parser = CSVParser.parse(
+                new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8)),
+                CSVFormat.DEFAULT
+                    .withHeader(header)
+                    .withIgnoreHeaderCase()
+                    .withTrim())) {
+
+            Iterator<CSVRecord> records = parser.iterator();
+            for (int i = 0; i < count && records.hasNext(); i++) {
+                try {
+                    items[i] = compiler.compileItem(menuId, MenuRow.of(records.next()), permissions, warnings);
+                } catch (RuntimeException e) {
+                    warnings.add("Error loading catalog row " + (page * slots.length + i + 1) + " of menu " + menuId + ": " + e.getMessage());
+                }
+            }
+        }
+
+        for (String warning : warnings) {
+            logger.warning(warning);
+        }
+        return items;
+    }
+
+    /**
+     * @return The slots the rows of a page are shown in, in order. The returned array must not be modified.
+     */
+    public int[] getSlots() {
+        return slots;
+    }
+
+    /**
+     * @return The position of the slot within a page, or -1 if the slot doesn't show catalog rows
+     */
+    public int getSlotIndex(int slot) {
+        return slot >= 0 && slot < slotIndexes.length ? slotIndexes[slot] : -1;
+    }
+
+    /**
+     * @return The number of pages, at least 1
+     */
+    public synchronized int getPageCount() {
+        return Math.max(1, pageOffsets.length);
+    }
+
+    public synchronized int getRowCount() {
+        return rowCount;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Finds the rows of a CSV file byte by byte. Newlines inside quoted values don't end a row,
+     * and blank lines are skipped like the CSV parser does. UTF-8 never uses the bytes of
+     * quotes and newlines inside multi-byte characters, so the bytes can be checked directly.
+     */
+    private static final class Indexer {
+        private final int pageSize;
+        private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        private final List<Long> pageOffsets = new ArrayList<>();
+        private boolean inHeader = true;
+        private boolean inQuotes;
+        private boolean rowHasContent;
+        private long rowStart;
+        private long position;
+        private int rows;
+
+        Indexer(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        void accept(byte b) {
+            position++;
+            if (b == '\n' && !inQuotes) {
+                endRow();
+                rowStart = position;
+                return;
+            }
+
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            }
+            if (b != '\r') {
+                rowHasContent = true;
+            }
+            if (inHeader) {
+                header.write(b);
+            }
+        }
+
+        void endRow() {
+            if (rowHasContent) {
+                if (inHeader) {
+                    inHeader = false;
+                } else {
+                    if (rows % pageSize == 0) {
+                        pageOffsets.add(rowStart);
+                    }
+                    rows++;
+                }
+            }
+            rowHasContent = false;
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package com.spreadsheetmenu.plugin.config;
 
 import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import com.spreadsheetmenu.plugin.condition.Condition;
+import com.spreadsheetmenu.plugin.condition.ConditionParseException;
+import com.spreadsheetmenu.plugin.condition.ConditionParser;
+import com.spreadsheetmenu.plugin.menu.MenuGraph;
 import com.spreadsheetmenu.plugin.menu.MenuInfo;
+import com.spreadsheetmenu.plugin.menu.MenuTemplate;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderRules;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
@@ -10,97 +16,117 @@ import org.bukkit.ChatColor;
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
-import java.util.stream.Stream;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class ConfigManager {
     
     private final SpreadsheetMenu plugin;
     private final Path dataFolder;
     private final Path menusFolder;
+    private final Path catalogsFolder;
     private final Path coreMenusFile;
+    private final Path settingsFile;
+    private final Path placeholdersFile;
+    private final MenuCompiler menuCompiler;
+    private final CsvMenuSource csvMenuSource;
+    private final TemplateCache templateCache;
     
+    private MenuSource menuSource; // Chosen by the menu_source setting on the first load
     private Map<String, MenuInfo> menuInfoMap;
     private List<String> validationErrors;
+    private Settings settings;
+    private PlaceholderRules placeholderRules;
+    private boolean lazyMenus; // Menu items are compiled when a menu is first opened
+    private String joinMenuId;
+    private volatile MenuGraph menuGraph;
+    private final Set<String> referencedPermissions; // Collected while loading, then registered in one pass
     
     public ConfigManager(SpreadsheetMenu plugin) {
         this.plugin = plugin;
         this.dataFolder = plugin.getDataFolder().toPath();
         this.menusFolder = dataFolder.resolve("menus");
+        this.catalogsFolder = dataFolder.resolve("catalogs");
         this.coreMenusFile = dataFolder.resolve("core_menus.csv");
+        this.settingsFile = dataFolder.resolve("settings.csv");
+        this.placeholdersFile = dataFolder.resolve("placeholders.csv");
+        this.menuCompiler = new MenuCompiler();
+        this.templateCache = new TemplateCache(this::getMenuInfo, plugin.getMetrics());
         this.menuInfoMap = new HashMap<>();
+        this.referencedPermissions = new LinkedHashSet<>();
+        this.menuGraph = MenuGraph.EMPTY;
         this.validationErrors = new ArrayList<>();
+        this.settings = new Settings(Map.of());
+        this.placeholderRules = PlaceholderRules.DEFAULT;
         
         // Create necessary folders
         try {
             Files.createDirectories(menusFolder);
+            Files.createDirectories(catalogsFolder);
         } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to create menus directory", e);
+            plugin.getLogger().log(Level.SEVERE, "Failed to create menu directories", e);
         }
         
         // Create default files if they don't exist
-        createDefaultFiles();
+        copyDefaultFile(settingsFile);
+        copyDefaultFile(placeholdersFile);
+        this.csvMenuSource = new CsvMenuSource(plugin, coreMenusFile, menusFolder, menuCompiler,
+            new MenuCache(plugin, dataFolder.resolve("menu_cache.bin")));
     }
     
-    private void createDefaultFiles() {
-        if (!Files.exists(coreMenusFile)) {
+    private void copyDefaultFile(Path file) {
+        if (!Files.exists(file)) {
+            String name = file.getFileName().toString();
             try {
-                Files.copy(plugin.getResource("core_menus.csv"), coreMenusFile, StandardCopyOption.REPLACE_EXISTING);
+                Files.copy(plugin.getResource(name), file, StandardCopyOption.REPLACE_EXISTING);
             } catch (IOException e) {
-                plugin.getLogger().log(Level.SEVERE, "Failed to create default core_menus.csv", e);
+                plugin.getLogger().log(Level.SEVERE, "Failed to create default " + name, e);
             }
         }
-        
-        // Copy all menu files from resources to the menus directory
+    }
+    
+    public boolean loadConfigs() {
+        long start = System.nanoTime();
         try {
-            // Get all menu files from core_menus.csv
-            if (Files.exists(coreMenusFile)) {
-                List<String> menuIds = new ArrayList<>();
-                try (CSVParser csvParser = CSVParser.parse(
-                        coreMenusFile,
-                        java.nio.charset.StandardCharsets.UTF_8,
-                        CSVFormat.DEFAULT
-                            .withHeader("menu_id", "menu_name", "open_condition", "permission", "escapeable")
-                            .withFirstRecordAsHeader()
-                            .withIgnoreHeaderCase()
-                            .withTrim())) {
-                    
-                    for (CSVRecord record : csvParser) {
-                        menuIds.add(record.get("menu_id"));
-                    }
-                }
-                
-                // Copy each menu file if it doesn't exist
-                for (String menuId : menuIds) {
-                    Path menuFile = menusFolder.resolve(menuId + ".csv");
-                    if (Files.notExists(menuFile)) {
-                        // Check if the resource exists
-                        if (plugin.getResource(menuId + ".csv") != null) {
-                            Files.copy(plugin.getResource(menuId + ".csv"), menuFile, StandardCopyOption.REPLACE_EXISTING);
-                            plugin.getLogger().info("Created default menu file: " + menuId + ".csv");
-                        } else {
-                            plugin.getLogger().warning("Menu " + menuId + " is defined in core_menus.csv but no template file exists in the plugin resources.");
-                        }
-                    }
-                }
-            }
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to create default menu files", e);
+            return loadAllConfigs();
+        } finally {
+            plugin.getMetrics().getConfigLoadLatency().recordSince(start);
         }
     }
     
-    public boolean loadConfigs() {
+    private boolean loadAllConfigs() {
         menuInfoMap.clear();
+        templateCache.clear();
         validationErrors.clear();
         
+        // Load global settings and per-placeholder rules
+        loadSettings();
+        loadPlaceholderRules();
+        
+        if (menuSource == null) {
+            menuSource = openMenuSource();
+        }
+        
         // Load core menus configuration
         loadCoreMenus();
         
-        // Load individual menu configurations
-        loadMenuConfigs();
+        // Load individual menu configurations, or leave them until they are opened
+        lazyMenus = settings.getBoolean("lazy_menus", false);
+        if (lazyMenus) {
+            plugin.getLogger().info("Menu items are loaded when a menu is first opened (lazy_menus)");
+        } else {
+            loadMenuConfigs();
+        }
+        
+        registerReferencedPermissions();
+        buildMenuGraph();
         
         // Log validation results
         if (validationErrors.isEmpty()) {
@@ -115,121 +141,593 @@ public class ConfigManager {
         }
     }
     
-    private void loadCoreMenus() {
-        if (!Files.exists(coreMenusFile)) {
-            plugin.getLogger().warning("core_menus.csv not found. Creating default file.");
-            createDefaultFiles();
-            return;
+    /**
+     * Opens the menu source named by the menu_source setting, falling back to the CSV files
+     */
+    private MenuSource openMenuSource() {
+        String name = settings.getString("menu_source", "csv").toLowerCase();
+        switch (name) {
+            case "csv":
+                return csvMenuSource;
+            case "sqlite":
+                SqliteMenuSource source = new SqliteMenuSource(plugin, dataFolder.resolve(SqliteMenuSource.FILE_NAME), menuCompiler);
+                try {
+                    source.open(csvMenuSource);
+                    plugin.getLogger().info("Loading menus from " + source.getName());
+                    return source;
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Failed to open " + source.getName() + ", loading menus from the CSV files", e);
+                    validationErrors.add(e.getMessage());
+                    return csvMenuSource;
+                }
+            default:
+                validationErrors.add("Unknown menu_source in settings.csv: " + name + ". Loading menus from the CSV files.");
+                return csvMenuSource;
+        }
+    }
+    
+    /**
+     * Closes the menu source. It is opened again by the next load.
+     */
+    public void close() {
+        if (menuSource != null) {
+            menuSource.close();
+            menuSource = null;
         }
+    }
+    
+    /**
+     * @return Whether menus are loaded from the CSV files, which are watched for changes
+     *         instead of being polled
+     */
+    public boolean isFileBased() {
+        return menuSource == null || menuSource == csvMenuSource;
+    }
+    
+    private void loadSettings() {
+        Map<String, String> values = new HashMap<>();
         
-        try (CSVParser csvParser = CSVParser.parse(
-                coreMenusFile,
-                java.nio.charset.StandardCharsets.UTF_8,
-                CSVFormat.DEFAULT
-                    .withHeader("menu_id", "menu_name", "open_condition", "permission", "escapeable")
-                    .withFirstRecordAsHeader()
-                    .withIgnoreHeaderCase()
-                    .withTrim())) {
-            
-            for (CSVRecord record : csvParser) {
+        if (Files.exists(settingsFile)) {
+            try (CSVParser csvParser = CSVParser.parse(
+                    settingsFile,
+                    java.nio.charset.StandardCharsets.UTF_8,
+                    CSVFormat.DEFAULT
+                        .withHeader("setting", "value", "description")
+                        .withFirstRecordAsHeader()
+                        .withIgnoreHeaderCase()
+                        .withTrim())) {
+                
+                for (CSVRecord record : csvParser) {
+                    values.put(record.get("setting").toLowerCase(), record.get("value"));
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                plugin.getLogger().log(Level.SEVERE, "Error loading settings.csv", e);
+                validationErrors.add("Failed to parse settings.csv: " + e.getMessage());
+            }
+        }
+        
+        settings = new Settings(values);
+    }
+    
+    private void loadPlaceholderRules() {
+        List<PlaceholderRules.Rule> rules = new ArrayList<>();
+        
+        if (Files.exists(placeholdersFile)) {
+            try (CSVParser csvParser = CSVParser.parse(
+                    placeholdersFile,
+                    java.nio.charset.StandardCharsets.UTF_8,
+                    CSVFormat.DEFAULT
+                        .withHeader()
+                        .withFirstRecordAsHeader()
+                        .withIgnoreHeaderCase()
+                        .withTrim())) {
+                
+                for (CSVRecord record : csvParser) {
+                    String placeholder = record.get("placeholder").replace("%", "");
+                    if (placeholder.isEmpty()) {
+                        continue;
+                    }
+                    String threadSafeValue = getOptional(record, "thread_safe");
+                    boolean threadSafe = threadSafeValue.isEmpty() || Boolean.parseBoolean(threadSafeValue);
+                    
+                    String ttlValue = getOptional(record, "cache_ttl");
+                    long cacheTtl = 0;
+                    if (ttlValue.equalsIgnoreCase("forever")) {
+                        cacheTtl = -1;
+                    } else if (!ttlValue.isEmpty()) {
+                        try {
+                            cacheTtl = Long.parseLong(ttlValue);
+                        } catch (NumberFormatException e) {
+                            validationErrors.add("Invalid cache_ttl for placeholder " + placeholder + " in placeholders.csv: " + ttlValue);
+                        }
+                    }
+                    
+                    rules.add(new PlaceholderRules.Rule(placeholder, threadSafe, cacheTtl));
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                plugin.getLogger().log(Level.SEVERE, "Error loading placeholders.csv", e);
+                validationErrors.add("Failed to parse placeholders.csv: " + e.getMessage());
+            }
+        }
+        
+        placeholderRules = new PlaceholderRules(rules);
+        
+        // Cached values may have been stored under the old TTLs
+        if (plugin.getPlaceholderService() != null) {
+            plugin.getPlaceholderService().invalidateAll();
+        }
+    }
+    
+    private void loadCoreMenus() {
+        joinMenuId = null;
+        List<Catalog> catalogs = new ArrayList<>();
+        
+        try {
+            for (MenuRow record : menuSource.loadMenus()) {
                 String menuId = record.get("menu_id");
                 String menuName = ChatColor.translateAlternateColorCodes('&', record.get("menu_name"));
                 String openCondition = record.get("open_condition");
                 String permission = record.get("permission");
                 boolean escapeable = Boolean.parseBoolean(record.get("escapeable"));
                 
+                // Compile the open condition, and the permission if it is a PlaceholderAPI condition
+                Condition compiledOpenCondition = compileCondition(menuId, "open_condition", openCondition);
+                Condition permissionCondition = permission.startsWith("%") && permission.endsWith("%")
+                    ? compileCondition(menuId, "permission", permission)
+                    : null;
+                
                 // Create MenuInfo object
-                MenuInfo menuInfo = new MenuInfo(menuId, menuName, openCondition, permission, escapeable);
+                MenuInfo menuInfo = new MenuInfo(menuId, menuName, openCondition, permission, escapeable,
+                    compiledOpenCondition, permissionCondition);
                 menuInfoMap.put(menuId, menuInfo);
                 
-                // Register menu permission if it's a regular permission (not a PlaceholderAPI condition)
+                // Optional live refresh of the dynamic slots
+                String refreshInterval = record.get("refresh_interval");
+                if (!refreshInterval.isEmpty()) {
+                    try {
+                        menuInfo.setRefreshInterval(Math.max(0, Integer.parseInt(refreshInterval)));
+                    } catch (NumberFormatException e) {
+                        validationErrors.add("Invalid refresh_interval for menu " + menuId + ": " + refreshInterval);
+                    }
+                }
+                
+                // Optional click limits, overriding the global settings
+                String clickRate = record.get("click_rate");
+                if (!clickRate.isEmpty()) {
+                    try {
+                        menuInfo.setClickRate(Math.max(0, Integer.parseInt(clickRate)));
+                    } catch (NumberFormatException e) {
+                        validationErrors.add("Invalid click_rate for menu " + menuId + ": " + clickRate);
+                    }
+                }
+                String clickDebounce = record.get("click_debounce_ms");
+                if (!clickDebounce.isEmpty()) {
+                    try {
+                        menuInfo.setClickDebounce(Math.max(0, Integer.parseInt(clickDebounce)));
+                    } catch (NumberFormatException e) {
+                        validationErrors.add("Invalid click_debounce_ms for menu " + menuId + ": " + clickDebounce);
+                    }
+                }
+                
+                // Optional catalog: a large data file shown page by page in a range of slots
+                String catalogFile = record.get("catalog");
+                if (!catalogFile.isEmpty()) {
+                    int[] slots = parseSlotRange(record.get("catalog_slots"));
+                    if (slots == null) {
+                        validationErrors.add("Invalid catalog_slots for menu " + menuId + ": " + record.get("catalog_slots"));
+                    } else {
+                        Catalog catalog = new Catalog(menuId, catalogsFolder.resolve(catalogFile), slots, menuCompiler, plugin.getLogger());
+                        menuInfo.setCatalog(catalog);
+                        catalogs.add(catalog);
+                    }
+                }
+                
+                // Optional override of whether all viewers share one inventory (empty = detect)
+                String shared = record.get("shared");
+                if (!shared.isEmpty()) {
+                    menuInfo.setShared(Boolean.parseBoolean(shared));
+                }
+                
+                // Optional menu opened for players when they join; only one menu can be open at a time
+                if (Boolean.parseBoolean(record.get("open_on_join"))) {
+                    if (joinMenuId == null) {
+                        joinMenuId = menuId;
+                    } else {
+                        plugin.getLogger().warning("Menu " + menuId + " has open_on_join, but " + joinMenuId + " is already opened on join. Ignoring it.");
+                    }
+                }
+                
+                // Collect the menu permission if it's a regular permission, and the permissions its conditions check
                 if (!permission.isEmpty() && !permission.startsWith("%")) {
-                    plugin.getMenuManager().ensurePermissionExists(permission);
+                    referencedPermissions.add(permission);
+                } else {
+                    referencedPermissions.addAll(ConditionParser.getPermissions(permission));
                 }
+                referencedPermissions.addAll(ConditionParser.getPermissions(openCondition));
             }
             
         } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error loading core_menus.csv", e);
-            validationErrors.add("Failed to parse core_menus.csv: " + e.getMessage());
+            plugin.getLogger().log(Level.SEVERE, "Error loading " + menuSource.getName(), e);
+            validationErrors.add("Failed to parse " + menuSource.getName() + ": " + e.getMessage());
         }
+        
+        indexCatalogs(catalogs);
     }
     
+    /**
+     * Builds the page index of each catalog on worker threads. Menus whose catalog
+     * can't be read are reported and show no catalog rows.
+     */
+    private void indexCatalogs(List<Catalog> catalogs) {
+        List<String> errors = catalogs.parallelStream()
+            .map(catalog -> {
+                try {
+                    catalog.index();
+                    return null;
+                } catch (IOException e) {
+                    return "Failed to index catalog " + catalog.getFile().getFileName() + ": " + e.getMessage();
+                }
+            })
+            .collect(Collectors.toList());
+        
+        for (int i = 0; i < catalogs.size(); i++) {
+            Catalog catalog = catalogs.get(i);
+            if (errors.get(i) != null) {
+                validationErrors.add(errors.get(i));
+            } else {
+                plugin.getLogger().info("Indexed catalog " + catalog.getFile().getFileName() + ": "
+                    + catalog.getRowCount() + " rows in " + catalog.getPageCount() + " pages");
+            }
+        }
+    }
+    
+    /**
+     * Parses a slot range like "0-44", defaulting to the first five rows
+     * 
+     * @return The slots in order, or null if the range is invalid
+     */
+    private static int[] parseSlotRange(String range) {
+        if (range.isEmpty()) {
+            range = "0-44";
+        }
+        
+        String[] bounds = range.split("-", 2);
+        try {
+            int first = Integer.parseInt(bounds[0].trim());
+            int last = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : first;
+            if (first < 0 || last < first || last >= MenuCompiler.INVENTORY_SIZE) {
+                return null;
+            }
+            return IntStream.rangeClosed(first, last).toArray();
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Registers the permissions collected while loading in one pass
+     */
+    private void registerReferencedPermissions() {
+        plugin.getMenuManager().registerPermissions(referencedPermissions);
+        referencedPermissions.clear();
+    }
+    
+    /**
+     * Rebuilds the graph of links between menus and warns about links to menus that don't exist.
+     * They are not validation errors: the buttons simply do nothing until the menu is added.
+     */
+    private void buildMenuGraph() {
+        MenuGraph graph = MenuGraph.build(menuInfoMap);
+        for (Map.Entry<String, Set<String>> entry : graph.getDanglingLinks().entrySet()) {
+            warnDanglingLinks(entry.getKey(), entry.getValue());
+        }
+        menuGraph = graph;
+    }
+    
+    private void warnDanglingLinks(String menuId, Set<String> targets) {
+        plugin.getLogger().warning("Menu " + menuId + " opens menus that don't exist: " + String.join(", ", targets));
+    }
+    
+    /**
+     * Parses a condition from core_menus.csv. Invalid conditions are reported and never pass,
+     * so a typo can't accidentally open a restricted menu.
+     */
+    private Condition compileCondition(String menuId, String column, String expression) {
+        try {
+            return ConditionParser.parse(expression);
+        } catch (ConditionParseException e) {
+            String error = "Invalid " + column + " for menu " + menuId + ": " + e.getMessage();
+            plugin.getLogger().warning(error);
+            validationErrors.add(error);
+            return Condition.NEVER;
+        }
+    }
+    
+    /**
+     * Loads and compiles the items of all menus from the menu source, then applies
+     * the results in menu order
+     */
     private void loadMenuConfigs() {
-        try (Stream<Path> menuFiles = Files.list(menusFolder)) {
-            menuFiles
-                .filter(path -> path.toString().toLowerCase().endsWith(".csv"))
-                .forEach(this::processMenuFile);
+        List<MenuLoadResult> results;
+        try {
+            results = menuSource.loadAll(menuInfoMap.keySet());
         } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error reading menus directory", e);
-            validationErrors.add("Failed to read menus directory: " + e.getMessage());
+            plugin.getLogger().log(Level.SEVERE, "Error reading menus from " + menuSource.getName(), e);
+            validationErrors.add("Failed to read menus from " + menuSource.getName() + ": " + e.getMessage());
+            return;
         }
+        
+        for (MenuLoadResult result : results) {
+            applyMenuResult(result);
+        }
+    }
+    
+    /**
+     * Loads and compiles the items of a menu and, if they are valid, replaces the menu's template
+     * 
+     * @return true if the menu was registered
+     */
+    private boolean processMenu(String menuId) {
+        MenuLoadResult result = menuSource.load(menuId);
+        return result != null && applyMenuResult(result);
     }
     
-    private void processMenuFile(Path menuFile) {
-        String menuId = menuFile.getFileName().toString().replace(".csv", "");
+    /**
+     * Applies a loaded menu on the main thread: reports its errors, registers the
+     * permissions its conditions use and sets the template of its menu
+     * 
+     * @return true if the menu was registered
+     */
+    private boolean applyMenuResult(MenuLoadResult result) {
+        for (String warning : result.warnings) {
+            plugin.getLogger().warning(warning);
+        }
         
-        // Skip if menu info doesn't exist in core_menus.csv
-        if (!menuInfoMap.containsKey(menuId)) {
-            String error = "Menu file " + menuFile.getFileName() + " exists but is not defined in core_menus.csv. Skipping.";
+        for (String error : result.errors) {
             plugin.getLogger().warning(error);
             validationErrors.add(error);
+        }
+        
+        referencedPermissions.addAll(result.permissions);
+        
+        MenuInfo menuInfo = menuInfoMap.get(result.menuId);
+        if (result.template == null || menuInfo == null) {
+            return false;
+        }
+        
+        if (result.file != null) {
+            menuInfo.setConfigFile(result.file.toFile());
+        }
+        menuInfo.setTemplate(result.template);
+        if (lazyMenus) {
+            addToTemplateCache(result.menuId, result.template);
+        }
+        
+        plugin.getLogger().info("Registered menu: " + result.menuId);
+        return true;
+    }
+    
+    /**
+     * Gets the compiled template of a menu. With lazy_menus, a menu that isn't loaded yet,
+     * or was dropped from the template cache, is loaded and compiled first; problems with it
+     * are logged as they would be on a reload. Must be called on the main thread, and the
+     * menu is read and compiled on it, so the first open of a large menu takes as long as
+     * loading it.
+     * 
+     * @return The template, or null if the menu has no valid items
+     */
+    public MenuTemplate loadTemplate(MenuInfo menuInfo) {
+        MenuTemplate template = menuInfo.getTemplate();
+        if (!lazyMenus) {
+            return template;
+        }
+        if (template != null) {
+            templateCache.touch(menuInfo.getMenuId());
+            return template;
+        }
+        
+        MenuLoadResult result = menuSource.load(menuInfo.getMenuId());
+        if (result == null) {
+            return null;
+        }
+        for (String warning : result.warnings) {
+            plugin.getLogger().warning(warning);
+        }
+        for (String error : result.errors) {
+            plugin.getLogger().warning(error);
+        }
+        plugin.getMenuManager().registerPermissions(result.permissions);
+        if (result.template == null) {
+            return null;
+        }
+        
+        if (result.file != null) {
+            menuInfo.setConfigFile(result.file.toFile());
+        }
+        menuInfo.setTemplate(result.template);
+        addToTemplateCache(menuInfo.getMenuId(), result.template);
+        plugin.getMetrics().countTemplateLoad();
+        
+        // The links of the loaded menu can be pre-rendered from now on
+        MenuGraph graph = menuGraph.withMenu(menuInfo.getMenuId(), result.template, menuInfoMap);
+        Set<String> dangling = graph.getDanglingLinks(menuInfo.getMenuId());
+        if (!dangling.isEmpty()) {
+            warnDanglingLinks(menuInfo.getMenuId(), dangling);
+        }
+        menuGraph = graph;
+        return result.template;
+    }
+    
+    private void addToTemplateCache(String menuId, MenuTemplate template) {
+        templateCache.add(menuId, template, settings.getInt("template_cache_size", 1000),
+            settings.getLong("template_cache_mb", 64) * 1024 * 1024);
+    }
+    
+    /**
+     * Applies changes to individual configuration files without reloading everything.
+     * Only the changed menus are re-parsed; their open menus are re-rendered in place
+     * and menus of untouched files are not affected. Must be called on the main thread.
+     * 
+     * @param changedFiles The files that were created, modified or deleted
+     */
+    public void applyFileChanges(Collection<Path> changedFiles) {
+        if (!isFileBased()) {
             return;
         }
         
-        // Load menu items from the CSV file
-        try (CSVParser csvParser = CSVParser.parse(
-                menuFile,
-                java.nio.charset.StandardCharsets.UTF_8,
-                CSVFormat.DEFAULT
-                    .withHeader()
-                    .withFirstRecordAsHeader()
-                    .withIgnoreHeaderCase()
-                    .withTrim())) {
-            
-            // Validate CSV structure
-            boolean hasRequiredColumns = csvParser.getHeaderMap().containsKey("slot") &&
-                                        csvParser.getHeaderMap().containsKey("material");
-            
-            if (!hasRequiredColumns) {
-                String error = "Menu file " + menuFile.getFileName() + " is missing required columns (slot, material).";
-                plugin.getLogger().warning(error);
-                validationErrors.add(error);
-                return;
+        Set<String> changedMenus = new LinkedHashSet<>();
+        for (Path file : changedFiles) {
+            if (!file.equals(coreMenusFile) && file.startsWith(menusFolder)) {
+                changedMenus.add(file.getFileName().toString().replace(".csv", ""));
             }
-            
-            // Validate menu items
-            boolean hasValidItems = false;
-            for (CSVRecord record : csvParser) {
-                try {
-                    int slot = Integer.parseInt(record.get("slot"));
-                    String material = record.get("material");
-                    
-                    if (slot >= 0 && !material.isEmpty()) {
-                        hasValidItems = true;
-                        break;
+        }
+        
+        applyMenuChanges(changedFiles.contains(coreMenusFile), changedMenus);
+    }
+    
+    /**
+     * Checks the menu source for menus that changed since they were loaded.
+     * Safe to call from any thread.
+     * 
+     * @return The changed menus
+     */
+    MenuChanges findChangedMenus() {
+        MenuSource source = menuSource;
+        if (source == null) {
+            return MenuChanges.NONE;
+        }
+        try {
+            return source.findChangedMenus();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to check " + source.getName() + " for changed menus", e);
+            return MenuChanges.NONE;
+        }
+    }
+    
+    /**
+     * Reloads the given menus without reloading everything. Their open menus are
+     * re-rendered in place and other menus are not affected. Must be called on the main thread.
+     * 
+     * @param definitionsChanged Whether the menu definitions (core_menus.csv) changed as well
+     * @param menuIds The menus whose items were added, changed or removed
+     */
+    public void applyMenuChanges(boolean definitionsChanged, Collection<String> menuIds) {
+        validationErrors.clear();
+        Set<String> changedMenus = new LinkedHashSet<>();
+        
+        if (definitionsChanged) {
+            changedMenus.addAll(reloadCoreMenus(menuIds));
+        } else {
+            for (String menuId : menuIds) {
+                // Menus that aren't loaded are read from the source when they are opened
+                MenuInfo loaded = menuInfoMap.get(menuId);
+                if (lazyMenus && (loaded == null || loaded.getTemplate() == null)) {
+                    continue;
+                }
+                
+                MenuLoadResult result = menuSource.load(menuId);
+                if (result == null) {
+                    if (menuInfoMap.containsKey(menuId)) {
+                        plugin.getLogger().warning("Menu " + menuId + " no longer has any items. Keeping the last loaded version until the next full reload.");
                     }
-                } catch (NumberFormatException e) {
-                    // Skip invalid rows
+                    continue;
+                }
+                
+                if (!menuInfoMap.containsKey(menuId)) {
+                    String error = "Menu " + menuId + " has items but is not defined in " + menuSource.getName() + ". Skipping.";
+                    plugin.getLogger().warning(error);
+                    validationErrors.add(error);
+                    continue;
+                }
+                
+                if (applyMenuResult(result)) {
+                    changedMenus.add(menuId);
                 }
             }
-            
-            if (!hasValidItems) {
-                String error = "Menu file " + menuFile.getFileName() + " does not contain any valid menu items.";
-                plugin.getLogger().warning(error);
-                validationErrors.add(error);
-                return;
+        }
+        
+        registerReferencedPermissions();
+        buildMenuGraph();
+        
+        for (String error : validationErrors) {
+            plugin.getLogger().warning("- " + error);
+        }
+        
+        for (String menuId : changedMenus) {
+            int updated = plugin.getMenuManager().rerenderOpenMenus(menuId);
+            plugin.getLogger().info("Reloaded menu " + menuId + (updated > 0 ? " (" + updated + " open menus updated)" : ""));
+        }
+    }
+    
+    /**
+     * Reloads the menu definitions. Menus that still exist keep their compiled template
+     * unless their items changed, new and changed menus are compiled, and open menus of
+     * removed menus are closed.
+     * 
+     * @param changedMenus The menus whose items changed
+     * @return The IDs of the menus that were added, recompiled or defined differently,
+     *         whose open menus need to be re-rendered
+     */
+    private Set<String> reloadCoreMenus(Collection<String> changedMenus) {
+        Map<String, MenuInfo> previous = new HashMap<>(menuInfoMap);
+        menuInfoMap.clear();
+        loadCoreMenus();
+        
+        Set<String> reloaded = new LinkedHashSet<>();
+        for (MenuInfo menuInfo : menuInfoMap.values()) {
+            String menuId = menuInfo.getMenuId();
+            MenuInfo old = previous.get(menuId);
+            boolean loaded = old != null && old.getTemplate() != null;
+            if (old == null || !old.hasSameDefinition(menuInfo)) {
+                reloaded.add(menuId);
             }
             
-            MenuInfo menuInfo = menuInfoMap.get(menuId);
-            menuInfo.setConfigFile(menuFile.toFile());
-            
-            plugin.getLogger().info("Registered menu: " + menuId);
-            
-        } catch (IOException e) {
-            String error = "Error loading menu file: " + menuFile.getFileName() + " - " + e.getMessage();
-            plugin.getLogger().log(Level.SEVERE, error);
-            validationErrors.add(error);
+            if (loaded && !changedMenus.contains(menuId)) {
+                menuInfo.setConfigFile(old.getConfigFile());
+                menuInfo.setTemplate(old.getTemplate());
+            } else if (loaded || !lazyMenus) {
+                if (processMenu(menuId)) {
+                    reloaded.add(menuId);
+                } else if (loaded) {
+                    // Keep the last loaded version of a menu whose items can't be loaded
+                    menuInfo.setConfigFile(old.getConfigFile());
+                    menuInfo.setTemplate(old.getTemplate());
+                }
+            }
+            // With lazy_menus, menus that weren't loaded are left until they are opened
         }
+        
+        for (String menuId : previous.keySet()) {
+            if (!menuInfoMap.containsKey(menuId)) {
+                templateCache.remove(menuId);
+                plugin.getMenuManager().closeMenus(menuId);
+                plugin.getLogger().info("Removed menu " + menuId);
+            }
+        }
+        
+        return reloaded;
+    }
+    
+    /**
+     * @return The menu opened for players when they join, or null if no menu has open_on_join
+     */
+    public MenuInfo getJoinMenu() {
+        return joinMenuId == null ? null : menuInfoMap.get(joinMenuId);
+    }
+    
+    public Path getMenusFolder() {
+        return menusFolder;
+    }
+    
+    public Path getCoreMenusFile() {
+        return coreMenusFile;
+    }
+    
+    /**
+     * Gets a column value, treating missing optional columns as empty
+     */
+    private static String getOptional(CSVRecord record, String column) {
+        return record.isMapped(column) && record.isSet(column) ? record.get(column) : "";
     }
     
     public Map<String, MenuInfo> getMenuInfoMap() {
@@ -244,6 +742,35 @@ public class ConfigManager {
         return validationErrors;
     }
     
+    /**
+     * @return The links between the loaded menus
+     */
+    public MenuGraph getMenuGraph() {
+        return menuGraph;
+    }
+    
+    /**
+     * @return Whether menu items are compiled when a menu is first opened (lazy_menus)
+     */
+    public boolean isLazy() {
+        return lazyMenus;
+    }
+    
+    /**
+     * @return The compiled templates of the menus loaded on first open
+     */
+    public TemplateCache getTemplateCache() {
+        return templateCache;
+    }
+    
+    public Settings getSettings() {
+        return settings;
+    }
+    
+    public PlaceholderRules getPlaceholderRules() {
+        return placeholderRules;
+    }
+    
     /**
      * Forces a reload of all menu files from the plugin resources
      * This is useful for debugging or when menu files are missing
@@ -0,0 +1,303 @@
+package com.spreadsheetmenu.plugin.config;
+
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import com.spreadsheetmenu.plugin.menu.MenuTemplate;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The default menu source: core_menus.csv and one CSV file per menu in the menus folder.
+ * Changes to the files are picked up by {@link MenuFileWatcher}.
+ */
+class CsvMenuSource implements MenuSource {
+
+    private final SpreadsheetMenu plugin;
+    private final Path coreMenusFile;
+    private final Path menusFolder;
+    private final MenuCompiler menuCompiler;
+    private final MenuCache menuCache;
+    private boolean copyDefaultMenus;
+
+    CsvMenuSource(SpreadsheetMenu plugin, Path coreMenusFile, Path menusFolder, MenuCompiler menuCompiler, MenuCache menuCache) {
+        this.plugin = plugin;
+        this.coreMenusFile = coreMenusFile;
+        this.menusFolder = menusFolder;
+        this.menuCompiler = menuCompiler;
+        this.menuCache = menuCache;
+        createDefaultFiles();
+    }
+
+    private void createDefaultFiles() {
+        if (!Files.exists(coreMenusFile)) {
+            try {
+                Files.copy(plugin.getResource("core_menus.csv"), coreMenusFile, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to create default core_menus.csv", e);
+            }
+        }
+
+        // Default menu files are copied by the first loadMenus,
+        // so core_menus.csv doesn't have to be parsed twice
+        copyDefaultMenus = true;
+    }
+
+    /**
+     * Copies the default file of a menu from the plugin resources if it doesn't exist yet
+     */
+    private void copyDefaultMenuFile(String menuId) {
+        Path menuFile = menusFolder.resolve(menuId + ".csv");
+        if (Files.exists(menuFile)) {
+            return;
+        }
+
+        // Check if the resource exists
+        if (plugin.getResource(menuId + ".csv") != null) {
+            try {
+                Files.copy(plugin.getResource(menuId + ".csv"), menuFile, StandardCopyOption.REPLACE_EXISTING);
+                plugin.getLogger().info("Created default menu file: " + menuId + ".csv");
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to create default menu file " + menuId + ".csv", e);
+            }
+        } else {
+            plugin.getLogger().warning("Menu " + menuId + " is defined in core_menus.csv but no template file exists in the plugin resources.");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "core_menus.csv";
+    }
+
+    @Override
+    public List<MenuRow> loadMenus() throws IOException {
+        if (!Files.exists(coreMenusFile)) {
+            plugin.getLogger().warning("core_menus.csv not found. Creating default file.");
+            createDefaultFiles();
+            if (!Files.exists(coreMenusFile)) {
+                return List.of();
+            }
+        }
+
+        boolean copyDefaults = copyDefaultMenus;
+        copyDefaultMenus = false;
+        List<MenuRow> rows = new ArrayList<>();
+
+        try (CSVParser csvParser = CSVParser.parse(
+                coreMenusFile,
+                StandardCharsets.UTF_8,
+                CSVFormat.DEFAULT
+                    .withHeader("menu_id", "menu_name", "open_condition", "permission", "escapeable")
+                    .withFirstRecordAsHeader()
+                    .withIgnoreHeaderCase()
+                    .withTrim())) {
+
+            for (CSVRecord record : csvParser) {
+                MenuRow row = MenuRow.of(record);
+                rows.add(row);
+                if (copyDefaults) {
+                    copyDefaultMenuFile(row.get("menu_id"));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Parses and compiles all menu files in parallel. Each file is parsed exactly once;
+     * the results are returned in file name order so validation errors and
+     * registrations are deterministic regardless of which file finished first.
+     */
+    @Override
+    public List<MenuLoadResult> loadAll(Set<String> menuIds) throws IOException {
+        List<Path> files;
+        try (Stream<Path> menuFiles = Files.list(menusFolder)) {
+            files = menuFiles
+                .filter(path -> path.toString().toLowerCase().endsWith(".csv"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        // Unchanged files are taken from the compiled cache instead of being parsed
+        MenuCache cache = null;
+        if (plugin.getConfigManager().getSettings().getBoolean("menu_cache", true)) {
+            cache = menuCache;
+            cache.load();
+        } else {
+            menuCache.delete();
+        }
+
+        // parallelStream().collect keeps the encounter (file name) order
+        MenuCache fileCache = cache;
+        List<MenuLoadResult> results = files.parallelStream()
+            .map(file -> parseMenuFile(file, fileCache, menuIds))
+            .collect(Collectors.toList());
+
+        if (cache != null) {
+            cache.save();
+            long cached = results.stream().filter(result -> result.cached).count();
+            if (cached > 0) {
+                plugin.getLogger().info("Loaded " + cached + " unchanged menus from the menu cache");
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public MenuLoadResult load(String menuId) {
+        Path menuFile = menusFolder.resolve(menuId + ".csv");
+        return Files.exists(menuFile) ? parseMenuFile(menuFile, null, null) : null;
+    }
+
+    /**
+     * The menu files are watched by MenuFileWatcher, which reports changes as they happen
+     */
+    @Override
+    public MenuChanges findChangedMenus() {
+        return MenuChanges.NONE;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Reads the item rows of a menu without compiling them
+     *
+     * @return The rows, or null if the menu has no file
+     */
+    List<MenuRow> readItems(String menuId) throws IOException {
+        Path menuFile = menusFolder.resolve(menuId + ".csv");
+        if (!Files.exists(menuFile)) {
+            return null;
+        }
+
+        List<MenuRow> rows = new ArrayList<>();
+        try (CSVParser csvParser = CSVParser.parse(
+                menuFile,
+                StandardCharsets.UTF_8,
+                CSVFormat.DEFAULT
+                    .withHeader()
+                    .withFirstRecordAsHeader()
+                    .withIgnoreHeaderCase()
+                    .withTrim())) {
+
+            for (CSVRecord record : csvParser) {
+                rows.add(MenuRow.of(record));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Parses and compiles a single menu file. Safe to call from worker threads:
+     * it reports errors and permissions through the result.
+     *
+     * @param cache The cache to take the template from if the file is unchanged, or null to always parse
+     * @param menuIds The defined menus, or null if the caller checks whether the menu is defined
+     */
+    private MenuLoadResult parseMenuFile(Path menuFile, MenuCache cache, Set<String> menuIds) {
+        String menuId = menuFile.getFileName().toString().replace(".csv", "");
+        MenuLoadResult result = new MenuLoadResult(menuId, menuFile);
+        FileContent fileContent = new FileContent(menuFile);
+
+        // Skip if menu info doesn't exist in core_menus.csv
+        if (menuIds != null && !menuIds.contains(menuId)) {
+            result.error("Menu file " + menuFile.getFileName() + " exists but is not defined in core_menus.csv. Skipping.");
+            return result;
+        }
+
+        long size;
+        long modified;
+        byte[] content;
+        try {
+            size = Files.size(menuFile);
+            modified = Files.getLastModifiedTime(menuFile).toMillis();
+
+            if (cache != null) {
+                MenuCache.Cached cached = cache.get(menuId, menuFile, size, modified, fileContent::read);
+                if (cached != null) {
+                    result.permissions.addAll(cached.getPermissions());
+                    result.template = cached.getTemplate();
+                    result.cached = true;
+                    return result;
+                }
+            }
+
+            content = fileContent.read();
+        } catch (IOException e) {
+            result.error("Error loading menu file: " + menuFile.getFileName() + " - " + e.getMessage());
+            return result;
+        }
+
+        // Load menu items from the CSV file
+        try (CSVParser csvParser = CSVParser.parse(
+                new String(content, StandardCharsets.UTF_8),
+                CSVFormat.DEFAULT
+                    .withHeader()
+                    .withFirstRecordAsHeader()
+                    .withIgnoreHeaderCase()
+                    .withTrim())) {
+
+            // Validate CSV structure
+            boolean hasRequiredColumns = csvParser.getHeaderMap().containsKey("slot") &&
+                                        csvParser.getHeaderMap().containsKey("material");
+
+            if (!hasRequiredColumns) {
+                result.error("Menu file " + menuFile.getFileName() + " is missing required columns (slot, material).");
+                return result;
+            }
+
+            // Compile the menu items in the same pass that validates them
+            MenuTemplate template = menuCompiler.compile(menuId, MenuRow.of(csvParser), result.permissions, result.warnings);
+
+            if (template.isEmpty()) {
+                result.error("Menu file " + menuFile.getFileName() + " does not contain any valid menu items.");
+                return result;
+            }
+
+            result.template = template;
+
+            // Files with invalid rows are parsed again each time, so their warnings are shown again
+            if (cache != null && result.warnings.isEmpty()) {
+                cache.put(menuFile, size, modified, content, template, result.permissions);
+            }
+
+        } catch (IOException | RuntimeException e) {
+            result.error("Error loading menu file: " + menuFile.getFileName() + " - " + e.getMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the content of a file once, however often it is needed
+     */
+    private static final class FileContent {
+        private final Path file;
+        private byte[] content;
+
+        FileContent(Path file) {
+            this.file = file;
+        }
+
+        byte[] read() throws IOException {
+            if (content == null) {
+                content = Files.readAllBytes(file);
+            }
+            return content;
+        }
+    }
+}
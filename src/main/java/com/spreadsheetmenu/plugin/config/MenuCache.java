@@ -0,0 +1,398 @@
+package com.spreadsheetmenu.plugin.config;
+
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import com.spreadsheetmenu.plugin.condition.Condition;
+import com.spreadsheetmenu.plugin.condition.ConditionParseException;
+import com.spreadsheetmenu.plugin.condition.ConditionParser;
+import com.spreadsheetmenu.plugin.menu.MenuItem;
+import com.spreadsheetmenu.plugin.menu.MenuTemplate;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Binary cache of compiled menu templates, so unchanged menu files don't have to be
+ * parsed again on startup.
+ *
+ * Each entry is keyed by the file name and stamped with the size, modification time and
+ * content hash of the CSV it was compiled from. Materials are stored by ordinal and all
+ * text goes through one shared string table. Conditions are stored as their source and
+ * parsed again on load, which is cheap compared to reading the CSV.
+ *
+ * The whole cache is discarded if the format version, the server version or the list of
+ * materials changed since it was written.
+ */
+public class MenuCache {
+
+    private static final int MAGIC = 0x53504D43; // "SPMC"
+    private static final int FORMAT_VERSION = 3;
+    private static final Material[] MATERIALS = Material.values();
+
+    private final SpreadsheetMenu plugin;
+    private final Path file;
+    private final Map<String, Entry> entries;
+    private final Map<String, Entry> written;
+    private String[] strings;
+    private ByteBuffer buffer;
+    private volatile boolean dirty;
+
+    public MenuCache(SpreadsheetMenu plugin, Path file) {
+        this.plugin = plugin;
+        this.file = file;
+        this.entries = new HashMap<>();
+        this.written = new ConcurrentHashMap<>();
+        this.strings = new String[0];
+    }
+
+    /**
+     * Reads the cache index from disk. Templates are only decoded when they are looked up.
+     * A missing, corrupt or outdated cache is treated as empty.
+     */
+    public void load() {
+        entries.clear();
+        written.clear();
+        dirty = false;
+
+        if (!Files.exists(file)) {
+            dirty = true;
+            return;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || !readString(buffer).equals(Bukkit.getBukkitVersion())
+                    || buffer.getInt() != MATERIALS.length || buffer.getInt() != materialFingerprint()) {
+                plugin.getLogger().info("Menu cache was written by another version, rebuilding it.");
+                dirty = true;
+                return;
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+
+            int entryCount = buffer.getInt();
+            for (int i = 0; i < entryCount; i++) {
+                String fileName = strings[buffer.getInt()];
+                long size = buffer.getLong();
+                long modified = buffer.getLong();
+                long hash = buffer.getLong();
+                int length = buffer.getInt();
+                entries.put(fileName, new Entry(size, modified, hash, buffer.position(), length));
+                buffer.position(buffer.position() + length);
+            }
+
+            this.strings = strings;
+            this.buffer = buffer;
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Menu cache is unreadable, rebuilding it.", e);
+            entries.clear();
+            dirty = true;
+        }
+    }
+
+    /**
+     * Looks up the cached template of a menu file. Safe to call from worker threads.
+     *
+     * @param menuId The ID of the menu
+     * @param menuFile The CSV file of the menu
+     * @param size The current size of the file
+     * @param modified The current modification time of the file
+     * @param content Supplies the file content, only read if the time stamp differs
+     * @return The cached template and its permissions, or null if the file changed
+     */
+    public Cached get(String menuId, Path menuFile, long size, long modified, ContentSupplier content) throws IOException {
+        String fileName = menuFile.getFileName().toString();
+        Entry entry = entries.get(fileName);
+        if (entry == null || entry.size != size) {
+            return null;
+        }
+
+        if (entry.modified != modified) {
+            // Touched but possibly not changed (e.g. copied or saved without edits)
+            if (hash(content.get()) != entry.hash) {
+                return null;
+            }
+            dirty = true;
+        }
+
+        Cached cached;
+        try {
+            cached = decode(menuId, buffer.slice(entry.offset, entry.length));
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.FINE, "Cached menu " + fileName + " is unreadable, parsing the file", e);
+            return null;
+        }
+
+        written.put(fileName, new Entry(size, modified, entry.hash, cached.template, cached.permissions));
+        return cached;
+    }
+
+    /**
+     * Stores a freshly compiled template. Safe to call from worker threads.
+     */
+    public void put(Path menuFile, long size, long modified, byte[] content, MenuTemplate template, Set<String> permissions) {
+        written.put(menuFile.getFileName().toString(), new Entry(size, modified, hash(content), template, permissions));
+        dirty = true;
+    }
+
+    /**
+     * Writes the templates that were looked up or stored since the last load, if anything changed,
+     * and releases the loaded cache. Entries of deleted or invalid files are dropped.
+     */
+    public void save() {
+        try {
+            if (dirty || written.size() != entries.size()) {
+                write();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to write the menu cache", e);
+        } finally {
+            entries.clear();
+            written.clear();
+            strings = new String[0];
+            buffer = null;
+        }
+    }
+
+    private void write() throws IOException {
+        Map<String, Integer> stringTable = new LinkedHashMap<>();
+        List<String> fileNames = new ArrayList<>(written.keySet());
+        Collections.sort(fileNames);
+
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(entryBytes);
+        out.writeInt(fileNames.size());
+        for (String fileName : fileNames) {
+            Entry entry = written.get(fileName);
+            byte[] body = encode(entry, stringTable);
+            out.writeInt(intern(fileName, stringTable));
+            out.writeLong(entry.size);
+            out.writeLong(entry.modified);
+            out.writeLong(entry.hash);
+            out.writeInt(body.length);
+            out.write(body);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        writeString(header, Bukkit.getBukkitVersion());
+        header.writeInt(MATERIALS.length);
+        header.writeInt(materialFingerprint());
+        header.writeInt(stringTable.size());
+        for (String string : stringTable.keySet()) {
+            writeString(header, string);
+        }
+        entryBytes.writeTo(header);
+
+        // Write to a temporary file first so a crash can't leave a half-written cache
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the cache file, e.g. when caching was disabled
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to delete the menu cache", e);
+        }
+    }
+
+    private byte[] encode(Entry entry, Map<String, Integer> stringTable) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(entry.permissions.size());
+        for (String permission : entry.permissions) {
+            out.writeInt(intern(permission, stringTable));
+        }
+
+        Map<Integer, List<MenuItem>> slotItems = entry.template.getSlotItems();
+        out.writeInt(entry.template.getSize());
+        out.writeInt(slotItems.size());
+        for (Map.Entry<Integer, List<MenuItem>> slot : slotItems.entrySet()) {
+            out.writeInt(slot.getKey());
+            out.writeInt(slot.getValue().size());
+            for (MenuItem item : slot.getValue()) {
+                out.writeInt(item.getMaterial().ordinal());
+                out.writeInt(item.getAmount());
+                out.writeInt(intern(item.getName(), stringTable));
+                out.writeInt(item.getLore().size());
+                for (String line : item.getLore()) {
+                    out.writeInt(intern(line, stringTable));
+                }
+                out.writeInt(intern(item.getCommand(), stringTable));
+                out.writeInt(item.getPriority());
+                out.writeInt(intern(item.getShowCondition(), stringTable));
+                out.writeBoolean(item.isRecheck());
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private Cached decode(String menuId, ByteBuffer body) {
+        Set<String> permissions = new LinkedHashSet<>();
+        int permissionCount = body.getInt();
+        for (int i = 0; i < permissionCount; i++) {
+            permissions.add(strings[body.getInt()]);
+        }
+
+        int size = body.getInt();
+        int slotCount = body.getInt();
+        Map<Integer, List<MenuItem>> slotItems = new HashMap<>();
+        for (int i = 0; i < slotCount; i++) {
+            int slot = body.getInt();
+            int itemCount = body.getInt();
+            List<MenuItem> items = new ArrayList<>(itemCount);
+            for (int j = 0; j < itemCount; j++) {
+                Material material = MATERIALS[body.getInt()];
+                int amount = body.getInt();
+                String name = strings[body.getInt()];
+                int loreCount = body.getInt();
+                List<String> lore = new ArrayList<>(loreCount);
+                for (int k = 0; k < loreCount; k++) {
+                    lore.add(strings[body.getInt()]);
+                }
+                String command = strings[body.getInt()];
+                int priority = body.getInt();
+                String showCondition = strings[body.getInt()];
+                boolean recheck = body.get() != 0;
+
+                Condition condition;
+                try {
+                    condition = ConditionParser.parse(showCondition);
+                } catch (ConditionParseException e) {
+                    // Only valid files are cached, so the parser itself must have changed
+                    throw new IllegalStateException("Cached condition no longer parses: " + showCondition, e);
+                }
+
+                items.add(new MenuItem(material, amount, name, lore, command, priority, showCondition, condition, recheck));
+            }
+            // Items are stored sorted, and the template's sort is stable
+            slotItems.put(slot, items);
+        }
+
+        if (body.hasRemaining()) {
+            throw new BufferUnderflowException();
+        }
+        return new Cached(new MenuTemplate(menuId, size, slotItems), permissions);
+    }
+
+    private static int intern(String string, Map<String, Integer> stringTable) {
+        return stringTable.computeIfAbsent(string, s -> stringTable.size());
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8).intern();
+    }
+
+    /**
+     * Hash of the material names in ordinal order, so a cache is discarded when materials
+     * are added, removed or reordered by a server update
+     */
+    private static int materialFingerprint() {
+        int hash = 1;
+        for (Material material : MATERIALS) {
+            hash = 31 * hash + material.name().hashCode();
+        }
+        return hash;
+    }
+
+    private static long hash(byte[] content) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(content)).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Reads the content of a menu file on demand
+     */
+    @FunctionalInterface
+    public interface ContentSupplier {
+        byte[] get() throws IOException;
+    }
+
+    /**
+     * A template loaded from the cache, with the permissions its show conditions use
+     */
+    public static final class Cached {
+        private final MenuTemplate template;
+        private final Set<String> permissions;
+
+        Cached(MenuTemplate template, Set<String> permissions) {
+            this.template = template;
+            this.permissions = permissions;
+        }
+
+        public MenuTemplate getTemplate() {
+            return template;
+        }
+
+        public Set<String> getPermissions() {
+            return permissions;
+        }
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final long hash;
+        private final int offset;
+        private final int length;
+        private final MenuTemplate template;
+        private final Set<String> permissions;
+
+        Entry(long size, long modified, long hash, int offset, int length) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+            this.template = null;
+            this.permissions = null;
+        }
+
+        Entry(long size, long modified, long hash, MenuTemplate template, Set<String> permissions) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.offset = -1;
+            this.length = 0;
+            this.template = template;
+            this.permissions = permissions;
+        }
+    }
+}
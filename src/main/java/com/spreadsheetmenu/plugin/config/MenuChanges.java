@@ -0,0 +1,35 @@
+package com.spreadsheetmenu.plugin.config;
+
+import java.util.Set;
+
+/**
+ * The menus of a {@link MenuSource} that changed since they were last loaded
+ */
+final class MenuChanges {
+
+    static final MenuChanges NONE = new MenuChanges(false, Set.of());
+
+    private final boolean definitionsChanged;
+    private final Set<String> menuIds;
+
+    /**
+     * @param definitionsChanged Whether menus were added, removed or defined differently
+     * @param menuIds The menus whose definition or items changed
+     */
+    MenuChanges(boolean definitionsChanged, Set<String> menuIds) {
+        this.definitionsChanged = definitionsChanged;
+        this.menuIds = menuIds;
+    }
+
+    boolean isDefinitionsChanged() {
+        return definitionsChanged;
+    }
+
+    Set<String> getMenuIds() {
+        return menuIds;
+    }
+
+    boolean isEmpty() {
+        return !definitionsChanged && menuIds.isEmpty();
+    }
+}
@@ -0,0 +1,129 @@
+package com.spreadsheetmenu.plugin.config;
+
+import com.spreadsheetmenu.plugin.condition.Condition;
+import com.spreadsheetmenu.plugin.condition.ConditionParseException;
+import com.spreadsheetmenu.plugin.condition.ConditionParser;
+import com.spreadsheetmenu.plugin.menu.MenuItem;
+import com.spreadsheetmenu.plugin.menu.MenuTemplate;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+
+import java.util.*;
+
+/**
+ * Compiles the rows of a menu into a MenuTemplate.
+ * Everything that does not depend on the viewing player (materials, colour codes,
+ * priority order) is resolved here, once, instead of on every menu open.
+ * Compiling does not touch server state, so files can be compiled on worker threads:
+ * the item stacks of the compiled items are only built when they are first rendered,
+ * on the main thread (see {@link MenuItem#getItem()}).
+ */
+public class MenuCompiler {
+
+    public static final int INVENTORY_SIZE = 54; // 6 rows
+
+    /**
+     * Compiles the given rows into a template
+     *
+     * @param menuId The ID of the menu being compiled
+     * @param rows The item rows of the menu
+     * @param permissions Collects the permissions referenced by show conditions, to be registered on the main thread
+     * @param warnings Collects the problems found in individual rows, to be logged on the main thread
+     * @return The compiled template, which is empty if no row was valid
+     */
+    public MenuTemplate compile(String menuId, Iterable<MenuRow> rows, Set<String> permissions, List<String> warnings) {
+        Map<Integer, List<MenuItem>> slotItems = new HashMap<>();
+
+        for (MenuRow record : rows) {
+            try {
+                int slot = Integer.parseInt(record.get("slot"));
+
+                // Skip if slot is out of bounds
+                if (slot < 0 || slot >= INVENTORY_SIZE) {
+                    warnings.add("Slot " + slot + " is out of bounds for menu: " + menuId);
+                    continue;
+                }
+
+                MenuItem menuItem = compileItem(menuId, record, permissions, warnings);
+                if (menuItem != null) {
+                    List<MenuItem> items = slotItems.computeIfAbsent(slot, k -> new ArrayList<>());
+                    if (items.size() >= MenuTemplate.MAX_VARIANTS) {
+                        warnings.add("Slot " + slot + " has more than " + MenuTemplate.MAX_VARIANTS + " items in menu: " + menuId + " (row " + record.getRowNumber() + " ignored)");
+                        continue;
+                    }
+                    items.add(menuItem);
+                }
+            } catch (NumberFormatException e) {
+                warnings.add("Invalid slot in menu: " + menuId + " (row " + record.getRowNumber() + ")");
+            } catch (Exception e) {
+                warnings.add("Error loading menu item in " + menuId + " (row " + record.getRowNumber() + "): " + e.getMessage());
+            }
+        }
+
+        return new MenuTemplate(menuId, INVENTORY_SIZE, slotItems);
+    }
+
+    /**
+     * Compiles a single item row. The slot and priority columns are not required,
+     * so catalog rows are compiled with it as well.
+     *
+     * @return The item, or null if the row is invalid
+     */
+    MenuItem compileItem(String menuId, MenuRow record, Set<String> permissions, List<String> warnings) {
+        String materialName = record.get("material").toUpperCase();
+        Material material = Material.getMaterial(materialName);
+
+        if (material == null) {
+            warnings.add("Invalid material: " + materialName + " in menu: " + menuId);
+            return null;
+        }
+
+        int amount = 1;
+        String amountValue = record.get("amount");
+        if (!amountValue.isEmpty()) {
+            try {
+                amount = Integer.parseInt(amountValue);
+            } catch (NumberFormatException e) {
+                warnings.add("Invalid amount in menu: " + menuId + ", using default: 1");
+            }
+        }
+
+        String name = record.get("name");
+        if (!name.isEmpty()) {
+            name = ChatColor.translateAlternateColorCodes('&', name);
+        }
+
+        List<String> lore = new ArrayList<>();
+        String loreString = record.get("lore");
+        if (!loreString.isEmpty()) {
+            for (String line : loreString.split("\\|")) {
+                lore.add(ChatColor.translateAlternateColorCodes('&', line));
+            }
+        }
+
+        int priority = 0;
+        try {
+            priority = Integer.parseInt(record.get("priority"));
+        } catch (NumberFormatException e) {
+            // Use default priority of 0
+        }
+
+        String command = record.get("command");
+        String showCondition = record.get("show_condition");
+        boolean recheck = Boolean.parseBoolean(record.get("recheck"));
+
+        // Collect the permissions used in show_condition, like %player_has_permission_spreadsheetmenu.items.diamond%.
+        // They are registered together once the configuration is loaded
+        permissions.addAll(ConditionParser.getPermissions(showCondition));
+
+        Condition condition;
+        try {
+            condition = ConditionParser.parse(showCondition);
+        } catch (ConditionParseException e) {
+            warnings.add("Invalid show_condition in menu: " + menuId + " (row " + record.getRowNumber() + "), item will be hidden: " + e.getMessage());
+            condition = Condition.NEVER;
+        }
+
+        return new MenuItem(material, amount, name, lore, command, priority, showCondition, condition, recheck);
+    }
+}
@@ -0,0 +1,117 @@
+package com.spreadsheetmenu.plugin.config;
+
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import org.bukkit.Bukkit;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the menus folder and core_menus.csv for changes.
+ * Events are debounced (editors often write a file several times in a row) and
+ * the changed files are then handed to ConfigManager.applyFileChanges on the main thread,
+ * so only the menus that actually changed are reloaded.
+ */
+public class MenuFileWatcher implements Runnable {
+
+    private final SpreadsheetMenu plugin;
+    private final Path menusFolder;
+    private final Path coreMenusFile;
+    private final long debounceMillis;
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean running;
+
+    public MenuFileWatcher(SpreadsheetMenu plugin) {
+        this.plugin = plugin;
+        this.menusFolder = plugin.getConfigManager().getMenusFolder();
+        this.coreMenusFile = plugin.getConfigManager().getCoreMenusFile();
+        this.debounceMillis = Math.max(50, plugin.getConfigManager().getSettings().getLong("watch_debounce_ms", 500));
+    }
+
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            menusFolder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            coreMenusFile.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to watch menu files for changes, hot reload is disabled", e);
+            return;
+        }
+
+        running = true;
+        thread = Thread.ofPlatform().daemon().name("SpreadsheetMenu-FileWatcher").start(this);
+    }
+
+    public void stop() {
+        running = false;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Ignore, the watcher thread exits either way
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        Set<Path> pending = new LinkedHashSet<>();
+
+        try {
+            while (running) {
+                // Wait for the first change, then keep collecting until no change
+                // has arrived for the debounce period
+                WatchKey key = pending.isEmpty()
+                    ? watchService.take()
+                    : watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+
+                if (key == null) {
+                    dispatch(pending);
+                    pending = new LinkedHashSet<>();
+                    continue;
+                }
+
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        plugin.getLogger().warning("Too many file changes at once, run /spm reload to make sure all menus are up to date.");
+                        continue;
+                    }
+
+                    Path file = directory.resolve((Path) event.context());
+                    if (isWatched(file)) {
+                        pending.add(file);
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    private boolean isWatched(Path file) {
+        if (file.equals(coreMenusFile)) {
+            return true;
+        }
+        return menusFolder.equals(file.getParent()) && file.getFileName().toString().toLowerCase().endsWith(".csv");
+    }
+
+    private void dispatch(Set<Path> changedFiles) {
+        if (!running || !plugin.isEnabled()) {
+            return;
+        }
+        Bukkit.getScheduler().runTask(plugin, () -> plugin.getConfigManager().applyFileChanges(changedFiles));
+    }
+}
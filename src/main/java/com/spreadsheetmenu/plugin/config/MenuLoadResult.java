@@ -0,0 +1,33 @@
+package com.spreadsheetmenu.plugin.config;
+
+import com.spreadsheetmenu.plugin.menu.MenuTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The outcome of loading the items of one menu from a {@link MenuSource}, possibly
+ * produced on a worker thread. ConfigManager applies it on the main thread.
+ */
+final class MenuLoadResult {
+
+    final String menuId;
+    final Path file; // The file the menu was read from, or null if it isn't file based
+    final List<String> errors = new ArrayList<>();
+    final List<String> warnings = new ArrayList<>();
+    final Set<String> permissions = new LinkedHashSet<>();
+    MenuTemplate template;
+    boolean cached;
+
+    MenuLoadResult(String menuId, Path file) {
+        this.menuId = menuId;
+        this.file = file;
+    }
+
+    void error(String error) {
+        errors.add(error);
+    }
+}
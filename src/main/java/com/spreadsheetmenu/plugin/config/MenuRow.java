@@ -0,0 +1,74 @@
+package com.spreadsheetmenu.plugin.config;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * One row of a menu definition or menu item, whichever source it was read from.
+ * Missing columns read as empty, so optional columns don't need checking.
+ */
+public interface MenuRow {
+
+    /**
+     * @return The value of the column, or an empty string if the row has no such column
+     */
+    String get(String column);
+
+    /**
+     * @return The number of the row in its menu, for messages about invalid rows
+     */
+    long getRowNumber();
+
+    static MenuRow of(CSVRecord record) {
+        return new MenuRow() {
+            @Override
+            public String get(String column) {
+                return record.isMapped(column) && record.isSet(column) ? record.get(column) : "";
+            }
+
+            @Override
+            public long getRowNumber() {
+                return record.getRecordNumber();
+            }
+        };
+    }
+
+    /**
+     * @param values The values by column name; null values read as empty
+     */
+    static MenuRow of(Map<String, String> values, long rowNumber) {
+        return new MenuRow() {
+            @Override
+            public String get(String column) {
+                String value = values.get(column);
+                return value != null ? value : "";
+            }
+
+            @Override
+            public long getRowNumber() {
+                return rowNumber;
+            }
+        };
+    }
+
+    /**
+     * @return The records as rows, read as they are iterated
+     */
+    static Iterable<MenuRow> of(Iterable<CSVRecord> records) {
+        return () -> new Iterator<>() {
+            private final Iterator<CSVRecord> iterator = records.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public MenuRow next() {
+                return of(iterator.next());
+            }
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package com.spreadsheetmenu.plugin.config;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Where menus are loaded from: the definitions of all menus (the columns of core_menus.csv)
+ * and the item rows of each menu. The menu_source setting picks the implementation;
+ * {@link CsvMenuSource} reads the CSV files and {@link SqliteMenuSource} an embedded database.
+ */
+interface MenuSource {
+
+    /**
+     * @return Where the menu definitions are read from, for log messages
+     */
+    String getName();
+
+    /**
+     * Reads the definitions of all menus, one row per menu
+     */
+    List<MenuRow> loadMenus() throws IOException;
+
+    /**
+     * Loads and compiles the items of all menus
+     *
+     * @param menuIds The defined menus; items of other menus are reported and skipped
+     * @return The results in menu order
+     */
+    List<MenuLoadResult> loadAll(Set<String> menuIds) throws IOException;
+
+    /**
+     * Loads and compiles the items of a single menu
+     *
+     * @return The result, or null if the source has no items for the menu
+     */
+    MenuLoadResult load(String menuId);
+
+    /**
+     * Finds the menus that were added, changed or removed since they were last loaded.
+     * May be called from any thread, and must not hold up loads while it runs.
+     *
+     * @return The changed menus, none if the source is watched by other means
+     */
+    MenuChanges findChangedMenus() throws IOException;
+
+    void close();
+}
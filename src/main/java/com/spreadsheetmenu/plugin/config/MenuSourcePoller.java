@@ -0,0 +1,44 @@
+package com.spreadsheetmenu.plugin.config;
+
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Checks a menu source that can't be watched, like menus.db, for changed menu versions.
+ * The check runs on a worker thread every source_poll_interval seconds; the changed menus
+ * are then handed to ConfigManager.applyMenuChanges on the main thread.
+ */
+public class MenuSourcePoller implements Runnable {
+
+    private final SpreadsheetMenu plugin;
+    private final long intervalTicks;
+    private BukkitTask task;
+
+    public MenuSourcePoller(SpreadsheetMenu plugin) {
+        this.plugin = plugin;
+        this.intervalTicks = Math.max(1, plugin.getConfigManager().getSettings().getLong("source_poll_interval", 5)) * 20L;
+    }
+
+    public void start() {
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this, intervalTicks, intervalTicks);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        MenuChanges changes = plugin.getConfigManager().findChangedMenus();
+        if (changes.isEmpty() || !plugin.isEnabled()) {
+            return;
+        }
+        // The definitions are only read again if a menu row changed, otherwise just the changed items
+        Bukkit.getScheduler().runTask(plugin, () ->
+            plugin.getConfigManager().applyMenuChanges(changes.isDefinitionsChanged(), changes.getMenuIds()));
+    }
+}
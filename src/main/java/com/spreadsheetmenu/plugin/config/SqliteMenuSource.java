@@ -0,0 +1,365 @@
+package com.spreadsheetmenu.plugin.config;
+
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import com.spreadsheetmenu.plugin.menu.MenuTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * Menu source backed by an embedded SQLite database file, menus.db in the plugin folder.
+ *
+ * The menus table has one row per menu with the columns of core_menus.csv, a version and
+ * an items_version. The menu_items table has the rows of the menu files, keyed by menu and
+ * position, so the items of one menu are read with a single range scan of the key. Triggers
+ * increase the version of a menu whenever its row changes and its items_version whenever its
+ * items change. findChangedMenus compares both with the ones last loaded on a connection of
+ * its own, so only menus that changed are read again, and only their items if only those changed.
+ *
+ * A new database is filled from the CSV menus. The SQLite driver bundled with the server is used.
+ */
+class SqliteMenuSource implements MenuSource {
+
+    static final String FILE_NAME = "menus.db";
+
+    private static final String[] MENU_COLUMNS = {
+        "menu_id", "menu_name", "open_condition", "permission", "escapeable", "refresh_interval",
+        "click_rate", "click_debounce_ms", "catalog", "catalog_slots", "shared", "open_on_join"
+    };
+    private static final String[] ITEM_COLUMNS = {
+        "menu_id", "position", "slot", "material", "amount", "name", "lore", "command", "priority", "show_condition", "recheck"
+    };
+
+    private final SpreadsheetMenu plugin;
+    private final Path file;
+    private final MenuCompiler menuCompiler;
+    private final Map<String, Long> versions; // The version of each menu when it was last loaded
+    private final Map<String, Long> itemVersions; // The items_version of each menu when it was last loaded
+    private final Object pollLock; // Guards pollConnection, so polling doesn't hold up loads
+    private Connection connection;
+    private Connection pollConnection;
+    private PreparedStatement selectItems;
+
+    SqliteMenuSource(SpreadsheetMenu plugin, Path file, MenuCompiler menuCompiler) {
+        this.plugin = plugin;
+        this.file = file;
+        this.menuCompiler = menuCompiler;
+        this.versions = new HashMap<>();
+        this.itemVersions = new HashMap<>();
+        this.pollLock = new Object();
+    }
+
+    /**
+     * Opens the database, creating the tables if needed
+     *
+     * @param importSource The menus to fill a new database with
+     */
+    synchronized void open(CsvMenuSource importSource) throws IOException {
+        boolean created = !Files.exists(file);
+        try {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file);
+            try (Statement statement = connection.createStatement()) {
+                // Lets other tools write menus while the plugin reads them
+                statement.execute("PRAGMA journal_mode=WAL");
+                createSchema(statement);
+            }
+            if (created) {
+                importMenus(importSource);
+            }
+            selectItems = connection.prepareStatement("SELECT * FROM menu_items WHERE menu_id = ? ORDER BY position");
+            synchronized (pollLock) {
+                pollConnection = DriverManager.getConnection("jdbc:sqlite:" + file);
+            }
+        } catch (SQLException | IOException e) {
+            close();
+            if (created) {
+                Files.deleteIfExists(file);
+            }
+            throw new IOException("Failed to open " + file.getFileName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void createSchema(Statement statement) throws SQLException {
+        StringBuilder menus = new StringBuilder("CREATE TABLE IF NOT EXISTS menus (menu_id TEXT PRIMARY KEY NOT NULL");
+        for (int i = 1; i < MENU_COLUMNS.length; i++) {
+            menus.append(", ").append(MENU_COLUMNS[i]).append(" TEXT");
+        }
+        statement.execute(menus.append(", version INTEGER NOT NULL DEFAULT 1, items_version INTEGER NOT NULL DEFAULT 1)").toString());
+
+        // Databases created before items_version existed
+        boolean hasItemsVersion = false;
+        try (ResultSet columns = statement.executeQuery("PRAGMA table_info(menus)")) {
+            while (columns.next()) {
+                hasItemsVersion |= columns.getString("name").equalsIgnoreCase("items_version");
+            }
+        }
+        if (!hasItemsVersion) {
+            statement.execute("ALTER TABLE menus ADD COLUMN items_version INTEGER NOT NULL DEFAULT 1");
+        }
+
+        StringBuilder items = new StringBuilder("CREATE TABLE IF NOT EXISTS menu_items (menu_id TEXT NOT NULL, position INTEGER NOT NULL");
+        for (int i = 2; i < ITEM_COLUMNS.length; i++) {
+            items.append(", ").append(ITEM_COLUMNS[i]).append(" TEXT");
+        }
+        statement.execute(items.append(", PRIMARY KEY (menu_id, position)) WITHOUT ROWID").toString());
+
+        // A change to the items of a menu makes a new items_version, and any other change to its
+        // row a new version. The menus trigger also fires for the updates of the item triggers,
+        // so it only counts updates that changed neither version. Triggers are created again
+        // in case the database has the triggers of an older version
+        for (String trigger : new String[] {"menu_items_inserted", "menu_items_updated", "menu_items_deleted", "menus_updated"}) {
+            statement.execute("DROP TRIGGER IF EXISTS " + trigger);
+        }
+        statement.execute("CREATE TRIGGER menu_items_inserted AFTER INSERT ON menu_items BEGIN "
+            + "UPDATE menus SET items_version = items_version + 1 WHERE menu_id = NEW.menu_id; END");
+        statement.execute("CREATE TRIGGER menu_items_updated AFTER UPDATE ON menu_items BEGIN "
+            + "UPDATE menus SET items_version = items_version + 1 WHERE menu_id IN (OLD.menu_id, NEW.menu_id); END");
+        statement.execute("CREATE TRIGGER menu_items_deleted AFTER DELETE ON menu_items BEGIN "
+            + "UPDATE menus SET items_version = items_version + 1 WHERE menu_id = OLD.menu_id; END");
+        statement.execute("CREATE TRIGGER menus_updated AFTER UPDATE ON menus "
+            + "WHEN NEW.version = OLD.version AND NEW.items_version = OLD.items_version BEGIN "
+            + "UPDATE menus SET version = version + 1 WHERE menu_id = NEW.menu_id; END");
+    }
+
+    /**
+     * Copies the definitions and items of all menus of the given source in one transaction
+     */
+    private void importMenus(CsvMenuSource source) throws SQLException, IOException {
+        List<MenuRow> menus = source.loadMenus();
+        connection.setAutoCommit(false);
+        try (PreparedStatement insertMenu = connection.prepareStatement(insert("menus", MENU_COLUMNS));
+             PreparedStatement insertItem = connection.prepareStatement(insert("menu_items", ITEM_COLUMNS))) {
+
+            for (MenuRow menu : menus) {
+                for (int i = 0; i < MENU_COLUMNS.length; i++) {
+                    insertMenu.setString(i + 1, menu.get(MENU_COLUMNS[i]));
+                }
+                insertMenu.addBatch();
+            }
+            insertMenu.executeBatch();
+
+            int itemCount = 0;
+            for (MenuRow menu : menus) {
+                String menuId = menu.get("menu_id");
+                List<MenuRow> items = source.readItems(menuId);
+                if (items == null) {
+                    continue;
+                }
+                for (int position = 0; position < items.size(); position++) {
+                    insertItem.setString(1, menuId);
+                    insertItem.setInt(2, position);
+                    for (int i = 2; i < ITEM_COLUMNS.length; i++) {
+                        insertItem.setString(i + 1, items.get(position).get(ITEM_COLUMNS[i]));
+                    }
+                    insertItem.addBatch();
+                }
+                itemCount += items.size();
+            }
+            insertItem.executeBatch();
+
+            connection.commit();
+            plugin.getLogger().info("Created " + file.getFileName() + " with " + menus.size() + " menus and " + itemCount + " items from the CSV menus");
+        } catch (SQLException | IOException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static String insert(String table, String[] columns) {
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+            + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+    }
+
+    @Override
+    public String getName() {
+        return FILE_NAME;
+    }
+
+    @Override
+    public synchronized List<MenuRow> loadMenus() throws IOException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT * FROM menus ORDER BY menu_id")) {
+
+            List<MenuRow> rows = readRows(resultSet);
+            synchronized (versions) {
+                versions.clear();
+                itemVersions.clear();
+                for (MenuRow row : rows) {
+                    versions.put(row.get("menu_id"), parseVersion(row.get("version")));
+                    itemVersions.put(row.get("menu_id"), parseVersion(row.get("items_version")));
+                }
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Loads the menus one by one through the menu_items key, and reports items of menus
+     * that aren't defined
+     */
+    @Override
+    public synchronized List<MenuLoadResult> loadAll(Set<String> menuIds) throws IOException {
+        List<MenuLoadResult> results = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                 "SELECT DISTINCT menu_id FROM menu_items WHERE menu_id NOT IN (SELECT menu_id FROM menus) ORDER BY menu_id")) {
+
+            while (resultSet.next()) {
+                MenuLoadResult result = new MenuLoadResult(resultSet.getString(1), null);
+                result.error("Menu " + result.menuId + " has items in " + FILE_NAME + " but is not defined in the menus table. Skipping.");
+                results.add(result);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+
+        for (String menuId : new TreeSet<>(menuIds)) {
+            MenuLoadResult result = load(menuId);
+            if (result != null) {
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized MenuLoadResult load(String menuId) {
+        MenuLoadResult result = new MenuLoadResult(menuId, null);
+        List<MenuRow> rows;
+        try {
+            selectItems.setString(1, menuId);
+            try (ResultSet resultSet = selectItems.executeQuery()) {
+                rows = readRows(resultSet);
+            }
+        } catch (SQLException e) {
+            result.error("Error loading menu " + menuId + " from " + FILE_NAME + " - " + e.getMessage());
+            return result;
+        }
+
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        MenuTemplate template = menuCompiler.compile(menuId, rows, result.permissions, result.warnings);
+        if (template.isEmpty()) {
+            result.error("Menu " + menuId + " in " + FILE_NAME + " does not contain any valid menu items.");
+            return result;
+        }
+
+        result.template = template;
+        return result;
+    }
+
+    /**
+     * Compares the versions of every menu with the ones it had when it was last loaded.
+     * Reads only the primary key and versions of each menu, on the poll connection, so
+     * loads on the main thread don't wait for it.
+     */
+    @Override
+    public MenuChanges findChangedMenus() throws IOException {
+        Map<String, long[]> current = new HashMap<>();
+        synchronized (pollLock) {
+            if (pollConnection == null) {
+                return MenuChanges.NONE;
+            }
+            try (Statement statement = pollConnection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT menu_id, version, items_version FROM menus")) {
+
+                while (resultSet.next()) {
+                    current.put(resultSet.getString(1), new long[] {resultSet.getLong(2), resultSet.getLong(3)});
+                }
+            } catch (SQLException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+
+        boolean definitionsChanged = false;
+        Set<String> changed = new LinkedHashSet<>();
+        synchronized (versions) {
+            for (Map.Entry<String, long[]> entry : current.entrySet()) {
+                String menuId = entry.getKey();
+                Long version = versions.put(menuId, entry.getValue()[0]);
+                Long itemVersion = itemVersions.put(menuId, entry.getValue()[1]);
+                if (version == null || version != entry.getValue()[0]) {
+                    definitionsChanged = true;
+                    changed.add(menuId);
+                } else if (itemVersion == null || itemVersion != entry.getValue()[1]) {
+                    changed.add(menuId);
+                }
+            }
+
+            // Removed menus
+            Iterator<String> menuIds = versions.keySet().iterator();
+            while (menuIds.hasNext()) {
+                String menuId = menuIds.next();
+                if (!current.containsKey(menuId)) {
+                    menuIds.remove();
+                    itemVersions.remove(menuId);
+                    definitionsChanged = true;
+                    changed.add(menuId);
+                }
+            }
+        }
+        return new MenuChanges(definitionsChanged, changed);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            synchronized (pollLock) {
+                if (pollConnection != null) {
+                    pollConnection.close();
+                }
+                pollConnection = null;
+            }
+            if (selectItems != null) {
+                selectItems.close();
+            }
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to close " + FILE_NAME, e);
+        }
+        selectItems = null;
+        connection = null;
+    }
+
+    /**
+     * Reads the remaining rows of a result set, numbered from 1 in the order they are read
+     */
+    private static List<MenuRow> readRows(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        String[] columns = new String[metaData.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = metaData.getColumnLabel(i + 1).toLowerCase();
+        }
+
+        List<MenuRow> rows = new ArrayList<>();
+        while (resultSet.next()) {
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < columns.length; i++) {
+                String value = resultSet.getString(i + 1);
+                values.put(columns[i], value != null ? value.trim() : null);
+            }
+            rows.add(MenuRow.of(values, rows.size() + 1));
+        }
+        return rows;
+    }
+
+    private static long parseVersion(String version) {
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
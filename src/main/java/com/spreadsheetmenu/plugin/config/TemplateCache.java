@@ -0,0 +1,127 @@
+package com.spreadsheetmenu.plugin.config;
+
+import com.spreadsheetmenu.plugin.menu.MenuInfo;
+import com.spreadsheetmenu.plugin.menu.MenuItem;
+import com.spreadsheetmenu.plugin.menu.MenuTemplate;
+import com.spreadsheetmenu.plugin.metrics.MetricsRegistry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The compiled templates of menus loaded on first open with lazy_menus, least recently
+ * opened first. Once more than template_cache_size templates or template_cache_mb megabytes
+ * are loaded, the least recently opened templates are dropped from their menus and compiled
+ * again the next time they are opened. Open menus keep the template they were rendered from.
+ * The size of a template is a rough estimate from its items. Main thread only, except for
+ * the totals read by the metrics.
+ */
+public class TemplateCache {
+
+    private final Function<String, MenuInfo> menus;
+    private final MetricsRegistry metrics;
+    private final LinkedHashMap<String, Entry> entries; // In access order
+    private volatile int size;
+    private volatile long bytes;
+
+    TemplateCache(Function<String, MenuInfo> menus, MetricsRegistry metrics) {
+        this.menus = menus;
+        this.metrics = metrics;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Marks the template of a menu as the most recently opened
+     */
+    void touch(String menuId) {
+        entries.get(menuId);
+    }
+
+    /**
+     * Adds or replaces the template of a menu, then drops the least recently opened
+     * templates beyond the limits. The added template is always kept.
+     *
+     * @param maxSize The most templates to keep, or 0 for no limit
+     * @param maxBytes The most estimated bytes to keep, or 0 for no limit
+     */
+    void add(String menuId, MenuTemplate template, int maxSize, long maxBytes) {
+        Entry entry = new Entry(template, estimateBytes(template));
+        Entry previous = entries.put(menuId, entry);
+        long total = bytes + entry.bytes - (previous != null ? previous.bytes : 0);
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (entries.size() > 1 && ((maxSize > 0 && entries.size() > maxSize) || (maxBytes > 0 && total > maxBytes))) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            eldest.remove();
+            total -= evicted.getValue().bytes;
+
+            // The menu may have been reloaded with a template of its own since
+            MenuInfo menuInfo = menus.apply(evicted.getKey());
+            if (menuInfo != null && menuInfo.getTemplate() == evicted.getValue().template) {
+                menuInfo.setTemplate(null);
+            }
+            metrics.countTemplateEviction();
+        }
+
+        size = entries.size();
+        bytes = total;
+    }
+
+    void remove(String menuId) {
+        Entry entry = entries.remove(menuId);
+        if (entry != null) {
+            size = entries.size();
+            bytes -= entry.bytes;
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        size = 0;
+        bytes = 0;
+    }
+
+    /**
+     * @return The number of loaded templates
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The estimated heap size of the loaded templates in bytes
+     */
+    public long getEstimatedBytes() {
+        return bytes;
+    }
+
+    /**
+     * Estimates the heap held by a template: a fixed cost per slot and item, plus the
+     * text of each item, which is kept as entered, as placeholder text and in the item meta
+     */
+    static long estimateBytes(MenuTemplate template) {
+        long total = 256 + template.getSize() * 48L;
+        for (int slot = 0; slot < template.getSize(); slot++) {
+            for (MenuItem item : template.getVariants(slot)) {
+                long chars = item.getName().length() + item.getCommand().length() + item.getShowCondition().length();
+                for (String line : item.getLore()) {
+                    chars += line.length() + 16;
+                }
+                total += 512 + chars * 6;
+            }
+        }
+        return total;
+    }
+
+    private static final class Entry {
+        private final MenuTemplate template;
+        private final long bytes;
+
+        Entry(MenuTemplate template, long bytes) {
+            this.template = template;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.spreadsheetmenu.plugin.listeners;
 
 import com.spreadsheetmenu.plugin.SpreadsheetMenu;
-import org.bukkit.Bukkit;
+import com.spreadsheetmenu.plugin.menu.MenuHolder;
+import com.spreadsheetmenu.plugin.menu.MenuInfo;
+import com.spreadsheetmenu.plugin.menu.MenuSession;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -9,7 +11,9 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.Inventory;
 
 public class MenuListener implements Listener {
     
@@ -25,26 +29,24 @@ public class MenuListener implements Listener {
             return;
         }
         
-        Player player = (Player) event.getWhoClicked();
-        String openMenu = plugin.getMenuManager().getOpenMenu(player);
+        // Menus are recognised by the holder of their inventory
+        Inventory top = event.getView().getTopInventory();
+        if (!(top.getHolder(false) instanceof MenuHolder holder)) {
+            return;
+        }
+        event.setCancelled(true);
         
-        if (openMenu != null) {
-            event.setCancelled(true);
-            
-            // Handle the click if it's in the top inventory
-            if (event.getClickedInventory() == event.getView().getTopInventory()) {
-                Bukkit.getScheduler().runTask(plugin, () -> {
-                    try {
-                        if (player.isOnline()) {
-                            plugin.getMenuManager().handleMenuClick(player, event.getSlot());
-                        }
-                    } catch (Exception e) {
-                        plugin.getLogger().warning("Error handling menu click for player " + player.getName() + ": " + e.getMessage());
-                        if (e.getCause() != null) {
-                            plugin.getLogger().warning("Caused by: " + e.getCause().getMessage());
-                        }
-                    }
-                });
+        // Handle the click if it's in the top inventory. Clicks are handled right away;
+        // actions that aren't safe inside the click event run on the next tick
+        if (event.getClickedInventory() == top) {
+            Player player = (Player) event.getWhoClicked();
+            try {
+                plugin.getMenuManager().handleMenuClick(player, holder, event.getSlot());
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error handling menu click for player " + player.getName() + ": " + e.getMessage());
+                if (e.getCause() != null) {
+                    plugin.getLogger().warning("Caused by: " + e.getCause().getMessage());
+                }
             }
         }
     }
@@ -55,10 +57,7 @@ public class MenuListener implements Listener {
             return;
         }
         
-        Player player = (Player) event.getWhoClicked();
-        String openMenu = plugin.getMenuManager().getOpenMenu(player);
-        
-        if (openMenu != null) {
+        if (event.getView().getTopInventory().getHolder(false) instanceof MenuHolder) {
             event.setCancelled(true);
         }
     }
@@ -70,44 +69,45 @@ public class MenuListener implements Listener {
         }
         
         Player player = (Player) event.getPlayer();
-        String openMenu = plugin.getMenuManager().getOpenMenu(player);
+        MenuSession session = plugin.getMenuManager().getSession(player);
         
-        if (openMenu != null) {
-            // Check if the menu is escapeable or if it's a forced close from a [close] command
-            if (!plugin.getMenuManager().isMenuEscapeable(player)) {
-                // Reopen the menu in the next tick
-                Bukkit.getScheduler().runTask(plugin, () -> {
-                    try {
-                        if (player.isOnline() && plugin.getMenuManager().getOpenMenu(player) != null) {
-                            plugin.getMenuManager().openMenu(player, openMenu);
-                        }
-                    } catch (Exception e) {
-                        plugin.getLogger().warning("Error reopening menu for player " + player.getName() + ": " + e.getMessage());
-                        if (e.getCause() != null) {
-                            plugin.getLogger().warning("Caused by: " + e.getCause().getMessage());
-                        }
-                    }
-                });
+        if (session != null) {
+            // Closes started by the plugin carry a close reason and are always allowed
+            if (!plugin.getMenuManager().isMenuEscapeable(session)) {
+                // Show the same inventory again in the next tick
+                plugin.getMenuManager().reopenMenu(player, session);
             } else {
-                try {
-                    // Only call closeMenu if it's not already being closed by a [close] command
-                    if (!plugin.getMenuManager().isForcedClose(player)) {
-                        plugin.getMenuManager().closeMenu(player);
-                    }
-                } catch (Exception e) {
-                    plugin.getLogger().warning("Error closing menu for player " + player.getName() + ": " + e.getMessage());
-                }
+                plugin.getMenuManager().endSession(session);
             }
         }
     }
     
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        MenuInfo joinMenu = plugin.getConfigManager().getJoinMenu();
+        if (joinMenu == null) {
+            return;
+        }
+        
+        // Queued, so a wave of joins after a restart is spread over several ticks
+        Player player = event.getPlayer();
+        try {
+            plugin.getMenuManager().getOpenQueue().enqueue(player, joinMenu.getMenuId());
+        } catch (Exception e) {
+            plugin.getLogger().warning("Error opening join menu for player " + player.getName() + ": " + e.getMessage());
+        }
+    }
+    
     @EventHandler(priority = EventPriority.HIGH)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
         try {
-            plugin.getMenuManager().closeMenu(player);
+            plugin.getMenuManager().closeMenu(player, MenuSession.CloseReason.QUIT);
         } catch (Exception e) {
             plugin.getLogger().warning("Error closing menu on player quit for " + player.getName() + ": " + e.getMessage());
         }
+        
+        // Cached placeholder values are only valid while the player is online
+        plugin.getPlaceholderService().invalidate(player.getUniqueId());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,213 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderContext;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Runs the actions of menu clicks in order under a per-tick time budget.
+ * Clicks are handled inside the click event, where commands and inventory changes are not safe,
+ * so deferred actions (see {@link MenuAction.Type#isDeferred()}) wait for the queue's task on the
+ * next tick. Clicks whose actions are all safe, like turning a page, run right away if nothing
+ * is waiting. During a burst of clicks actions that don't fit in a tick's budget wait for the
+ * next ticks instead of stacking hundreds of command dispatches into one tick. At least one
+ * action runs per tick, so the queue always makes progress.
+ */
+public class ActionQueue implements Runnable {
+
+    private final SpreadsheetMenu plugin;
+    private final MenuManager menuManager;
+    private final Deque<QueuedAction> queue;
+    private volatile int depth;
+    private BukkitTask task;
+    private boolean running;
+    private int tick = -1;
+    private long spentNanos;
+    private int runThisTick;
+
+    ActionQueue(SpreadsheetMenu plugin, MenuManager menuManager) {
+        this.plugin = plugin;
+        this.menuManager = menuManager;
+        this.queue = new ArrayDeque<>();
+    }
+
+    public void start() {
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+        }
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queue.clear();
+        depth = 0;
+    }
+
+    /**
+     * Queues the actions of a click. They run right away if they are all safe to run inside the
+     * click event and no earlier actions are waiting, otherwise on the next tick.
+     * Must be called on the main thread.
+     *
+     * @param session The menu that was clicked
+     */
+    public void submit(Player player, MenuSession session, List<MenuAction> actions) {
+        boolean runNow = queue.isEmpty();
+        Click click = new Click(plugin, player.getUniqueId(), session);
+        for (int i = 0; i < actions.size(); i++) {
+            MenuAction action = actions.get(i);
+            queue.addLast(new QueuedAction(click, action));
+            runNow &= !action.getType().isDeferred();
+        }
+        depth = queue.size();
+        plugin.getMetrics().recordActionQueueDepth(depth);
+        if (runNow) {
+            run();
+        }
+    }
+
+    /**
+     * @return The number of actions waiting to run. May be read from any thread.
+     */
+    public int size() {
+        return depth;
+    }
+
+    @Override
+    public void run() {
+        // Actions can trigger other plugins; don't start a second loop from inside one
+        if (running || queue.isEmpty()) {
+            return;
+        }
+
+        int currentTick = Bukkit.getCurrentTick();
+        if (currentTick != tick) {
+            tick = currentTick;
+            spentNanos = 0;
+            runThisTick = 0;
+        }
+
+        long budget = plugin.getConfigManager().getSettings().getLong("action_budget_micros", 2000) * 1000L;
+        running = true;
+        try {
+            while (!queue.isEmpty() && (runThisTick == 0 || spentNanos < budget)) {
+                QueuedAction next = queue.pollFirst();
+                long start = System.nanoTime();
+                try {
+                    execute(next);
+                } catch (Exception e) {
+                    plugin.getLogger().warning("Error running menu action " + next.action + ": " + e.getMessage());
+                }
+                spentNanos += System.nanoTime() - start;
+                runThisTick++;
+            }
+        } finally {
+            running = false;
+            depth = queue.size();
+        }
+    }
+
+    private void execute(QueuedAction queued) {
+        Click click = queued.click;
+        Player player = Bukkit.getPlayer(click.playerId);
+        if (player == null || !player.isOnline()) {
+            return;
+        }
+        plugin.getMetrics().getActionDelay().recordSince(click.time);
+
+        MenuAction action = queued.action;
+        switch (action.getType()) {
+            case PLAYER:
+                player.performCommand(action.getArgument().getText());
+                break;
+            case CONSOLE:
+                Bukkit.dispatchCommand(Bukkit.getConsoleSender(), click.context(player).resolve(action.getArgument()));
+                break;
+            case CLOSE:
+                if (isCurrent(player, click)) {
+                    click.closed = true;
+                    menuManager.closeMenu(player);
+                }
+                break;
+            case OPEN:
+                if (isCurrent(player, click)) {
+                    menuManager.navigate(player, click.session, action.getArgument().getText());
+                }
+                break;
+            case BACK:
+                if (isCurrent(player, click)) {
+                    menuManager.back(player, click.session, action.getArgument().getText());
+                }
+                break;
+            case NEXT_PAGE:
+                if (isCurrent(player, click)) {
+                    menuManager.turnPage(player, click.session, 1);
+                }
+                break;
+            case PREV_PAGE:
+                if (isCurrent(player, click)) {
+                    menuManager.turnPage(player, click.session, -1);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Menu actions of a click that waited in the queue only apply to the menu that was clicked,
+     * or to the player without a menu if an earlier action of the same click closed it
+     */
+    private boolean isCurrent(Player player, Click click) {
+        MenuSession session = menuManager.getSession(player);
+        return session == click.session || (click.closed && session == null);
+    }
+
+    /**
+     * The player and menu of a click, shared by all of its actions
+     */
+    private static final class Click {
+        private final SpreadsheetMenu plugin;
+        private final UUID playerId;
+        private final MenuSession session;
+        private final long time;
+        private PlaceholderContext context;
+        private boolean closed;
+
+        Click(SpreadsheetMenu plugin, UUID playerId, MenuSession session) {
+            this.plugin = plugin;
+            this.playerId = playerId;
+            this.session = session;
+            this.time = System.nanoTime();
+        }
+
+        /**
+         * @return One placeholder context for all actions of the click, so each placeholder is resolved once
+         */
+        PlaceholderContext context(Player player) {
+            if (context == null) {
+                context = plugin.getPlaceholderService().createContext(player);
+            }
+            return context;
+        }
+    }
+
+    private static final class QueuedAction {
+        private final Click click;
+        private final MenuAction action;
+
+        QueuedAction(Click click, MenuAction action) {
+            this.click = click;
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderText;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One step of a menu item's command, compiled when the menu is loaded.
+ * A command can chain several actions with &&, e.g.
+ * {@code [console] eco take %player_name% 500 && give %player_name% diamond_sword 1}.
+ * A part without a prefix runs the same way as the [console] or [player] command before it,
+ * or as the player after other actions. A player command without a prefix keeps any &&
+ * up to the next prefixed action as part of the command, as before chaining existed.
+ */
+public final class MenuAction {
+
+    public enum Type {
+        /** Run a command as the player, without expanding placeholders */
+        PLAYER("[player]"),
+        /** Run a command as the console with the player's placeholders expanded */
+        CONSOLE("[console]"),
+        /** Close the menu */
+        CLOSE("[close]"),
+        /** Open another menu, remembering the current one for [back] */
+        OPEN("[open]"),
+        /** Return to the menu left with the last [open], or open the menu given as the argument if there is none */
+        BACK("[back]"),
+        /** Show the next page of a catalog menu */
+        NEXT_PAGE("[next_page]"),
+        /** Show the previous page of a catalog menu */
+        PREV_PAGE("[prev_page]");
+
+        private final String prefix;
+
+        Type(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        boolean runsCommand() {
+            return this == PLAYER || this == CONSOLE;
+        }
+
+        /**
+         * @return Whether the action must wait until after the click event. Commands and closing
+         *         or opening inventories are not safe inside an InventoryClickEvent; turning a page
+         *         only sets items and runs during the click.
+         */
+        public boolean isDeferred() {
+            return this != NEXT_PAGE && this != PREV_PAGE;
+        }
+    }
+
+    private static final String SEPARATOR = "&&";
+
+    private final Type type;
+    private final PlaceholderText argument;
+
+    private MenuAction(Type type, String argument) {
+        this.type = type;
+        this.argument = PlaceholderText.of(argument);
+    }
+
+    /**
+     * Compiles a command into its actions
+     *
+     * @param command The command column of a menu item
+     * @return The actions in the order they run, empty if the command is empty
+     */
+    public static List<MenuAction> parse(String command) {
+        if (command == null || command.isBlank()) {
+            return List.of();
+        }
+
+        List<Type> types = new ArrayList<>(1);
+        List<String> arguments = new ArrayList<>(1);
+        Type previous = null; // The last [console] or [player] prefix, which prefixless parts continue
+        boolean unprefixed = false; // The last part is a player command without a prefix
+        for (String part : command.split(SEPARATOR)) {
+            String trimmed = part.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+
+            Type type = prefixOf(trimmed);
+            if (type != null) {
+                trimmed = trimmed.substring(type.prefix.length()).trim();
+                previous = type.runsCommand() ? type : null;
+                unprefixed = false;
+            } else if (unprefixed) {
+                // The && is part of the command
+                int last = arguments.size() - 1;
+                arguments.set(last, arguments.get(last) + SEPARATOR + part);
+                continue;
+            } else {
+                type = previous != null ? previous : Type.PLAYER;
+                unprefixed = previous == null;
+                trimmed = part; // Trimmed below, once the parts of the command are joined
+            }
+            types.add(type);
+            arguments.add(trimmed);
+        }
+
+        List<MenuAction> actions = new ArrayList<>(types.size());
+        for (int i = 0; i < types.size(); i++) {
+            actions.add(new MenuAction(types.get(i), arguments.get(i).trim()));
+        }
+        return List.copyOf(actions);
+    }
+
+    private static Type prefixOf(String part) {
+        for (Type candidate : Type.values()) {
+            if (part.startsWith(candidate.prefix)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The command or menu ID of the action, with its placeholders tokenised
+     */
+    public PlaceholderText getArgument() {
+        return argument;
+    }
+
+    @Override
+    public String toString() {
+        return type.prefix + " " + argument.getText();
+    }
+}
@@ -0,0 +1,104 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import java.util.*;
+
+/**
+ * The links between menus: for each menu, the menus its items open with [open], and
+ * [back] with a fallback menu, in slot order. Built once per configuration load from the
+ * compiled templates, and updated one menu at a time for menus compiled on first open;
+ * catalog rows are read page by page and are not part of the graph.
+ */
+public class MenuGraph {
+
+    public static final MenuGraph EMPTY = new MenuGraph(Map.of(), Map.of());
+
+    private final Map<String, List<String>> links;
+    private final Map<String, Set<String>> danglingLinks;
+
+    private MenuGraph(Map<String, List<String>> links, Map<String, Set<String>> danglingLinks) {
+        this.links = links;
+        this.danglingLinks = danglingLinks;
+    }
+
+    /**
+     * Builds the graph of the given menus
+     *
+     * @param menus The loaded menus by ID
+     */
+    public static MenuGraph build(Map<String, MenuInfo> menus) {
+        Map<String, List<String>> links = new HashMap<>();
+        Map<String, Set<String>> dangling = new TreeMap<>();
+
+        for (MenuInfo menuInfo : menus.values()) {
+            if (menuInfo.getTemplate() != null) {
+                addLinks(menuInfo.getMenuId(), menuInfo.getTemplate(), menus, links, dangling);
+            }
+        }
+
+        return new MenuGraph(links, Collections.unmodifiableMap(dangling));
+    }
+
+    /**
+     * Creates a copy of this graph with the links of a single menu replaced; the links
+     * of other menus are kept as they are
+     *
+     * @param menus The loaded menus by ID
+     */
+    public MenuGraph withMenu(String menuId, MenuTemplate template, Map<String, MenuInfo> menus) {
+        Map<String, List<String>> newLinks = new HashMap<>(links);
+        Map<String, Set<String>> newDangling = new TreeMap<>(danglingLinks);
+        newLinks.remove(menuId);
+        newDangling.remove(menuId);
+        addLinks(menuId, template, menus, newLinks, newDangling);
+        return new MenuGraph(newLinks, Collections.unmodifiableMap(newDangling));
+    }
+
+    private static void addLinks(String menuId, MenuTemplate template, Map<String, MenuInfo> menus,
+                                 Map<String, List<String>> links, Map<String, Set<String>> dangling) {
+        Set<String> targets = new LinkedHashSet<>();
+        for (int slot = 0; slot < template.getSize(); slot++) {
+            for (MenuItem item : template.getVariants(slot)) {
+                for (MenuAction action : item.getActions()) {
+                    String target = action.getArgument().getText();
+                    if ((action.getType() == MenuAction.Type.OPEN || action.getType() == MenuAction.Type.BACK)
+                            && !target.isEmpty()) {
+                        targets.add(target);
+                    }
+                }
+            }
+        }
+
+        List<String> existing = new ArrayList<>(targets.size());
+        for (String target : targets) {
+            if (menus.containsKey(target)) {
+                existing.add(target);
+            } else {
+                dangling.computeIfAbsent(menuId, k -> new TreeSet<>()).add(target);
+            }
+        }
+        if (!existing.isEmpty()) {
+            links.put(menuId, List.copyOf(existing));
+        }
+    }
+
+    /**
+     * @return The link targets that are not loaded menus, by the ID of the menu linking to them
+     */
+    public Set<String> getDanglingLinks(String menuId) {
+        return danglingLinks.getOrDefault(menuId, Set.of());
+    }
+
+    /**
+     * @return The existing menus the given menu links to, in slot order
+     */
+    public List<String> getLinks(String menuId) {
+        return links.getOrDefault(menuId, List.of());
+    }
+
+    /**
+     * @return The link targets that are not loaded menus, by the ID of the menu linking to them
+     */
+    public Map<String, Set<String>> getDanglingLinks() {
+        return danglingLinks;
+    }
+}
@@ -0,0 +1,44 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+
+/**
+ * The holder of every menu inventory. Listeners recognise a menu by its holder instead of
+ * looking the player up, and the holder of a player's own inventory leads straight to the
+ * session. Inventories shared by all viewers of a menu have no session of their own.
+ */
+public final class MenuHolder implements InventoryHolder {
+
+    private final String menuId;
+    private Inventory inventory;
+    private MenuSession session;
+
+    MenuHolder(String menuId) {
+        this.menuId = menuId;
+    }
+
+    public String getMenuId() {
+        return menuId;
+    }
+
+    @Override
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    void setInventory(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    /**
+     * @return The session of the player the inventory was rendered for, or null if it is shared
+     */
+    public MenuSession getSession() {
+        return session;
+    }
+
+    void setSession(MenuSession session) {
+        this.session = session;
+    }
+}
@@ -1,6 +1,14 @@
 package com.spreadsheetmenu.plugin.menu;
 
+import com.spreadsheetmenu.plugin.condition.Condition;
+import com.spreadsheetmenu.plugin.condition.ConditionParser;
+import com.spreadsheetmenu.plugin.config.Catalog;
 import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 public class MenuInfo {
     
@@ -9,14 +17,46 @@ public class MenuInfo {
     private final String openCondition;
     private final String permission;
     private final boolean escapeable;
+    private final Condition compiledOpenCondition;
+    private final Condition permissionCondition;
+    private final Set<String> conditionIdentifiers;
+    private final boolean openConditionNeedsPlaceholderApi;
+    private final boolean permissionNeedsPlaceholderApi;
     private File configFile;
+    private volatile MenuTemplate template;
+    private int refreshInterval;
+    private Boolean shared;
+    private Catalog catalog;
+    private Integer clickRate;
+    private Integer clickDebounce;
     
     public MenuInfo(String menuId, String menuName, String openCondition, String permission, boolean escapeable) {
+        this(menuId, menuName, openCondition, permission, escapeable, Condition.ALWAYS, null);
+    }
+    
+    /**
+     * @param compiledOpenCondition The parsed open_condition
+     * @param permissionCondition The parsed permission if it is a PlaceholderAPI condition, or null for a regular permission
+     */
+    public MenuInfo(String menuId, String menuName, String openCondition, String permission, boolean escapeable,
+                    Condition compiledOpenCondition, Condition permissionCondition) {
         this.menuId = menuId;
         this.menuName = menuName;
         this.openCondition = openCondition;
         this.permission = permission;
         this.escapeable = escapeable;
+        this.compiledOpenCondition = compiledOpenCondition;
+        this.permissionCondition = permissionCondition;
+        
+        // Permission checks are compiled into Player#hasPermission calls and need no PlaceholderAPI
+        Set<String> identifiers = new LinkedHashSet<>(ConditionParser.getPlaceholderIdentifiers(openCondition));
+        List<String> permissionIdentifiers = permissionCondition != null
+            ? ConditionParser.getPlaceholderIdentifiers(permission)
+            : List.of();
+        this.openConditionNeedsPlaceholderApi = !identifiers.isEmpty();
+        this.permissionNeedsPlaceholderApi = !permissionIdentifiers.isEmpty();
+        identifiers.addAll(permissionIdentifiers);
+        this.conditionIdentifiers = Set.copyOf(identifiers);
     }
     
     public String getMenuId() {
@@ -35,6 +75,38 @@ public class MenuInfo {
         return permission;
     }
     
+    public Condition getCompiledOpenCondition() {
+        return compiledOpenCondition;
+    }
+    
+    /**
+     * @return The compiled permission condition, or null if the permission is a regular permission node
+     */
+    public Condition getPermissionCondition() {
+        return permissionCondition;
+    }
+    
+    /**
+     * @return Whether the open condition uses placeholders that only PlaceholderAPI can resolve
+     */
+    public boolean openConditionNeedsPlaceholderApi() {
+        return openConditionNeedsPlaceholderApi;
+    }
+    
+    /**
+     * @return Whether the permission condition uses placeholders that only PlaceholderAPI can resolve
+     */
+    public boolean permissionNeedsPlaceholderApi() {
+        return permissionNeedsPlaceholderApi;
+    }
+    
+    /**
+     * @return The identifiers of the PlaceholderAPI placeholders used by the open condition and permission condition
+     */
+    public Set<String> getConditionIdentifiers() {
+        return conditionIdentifiers;
+    }
+    
     public boolean isEscapeable() {
         return escapeable;
     }
@@ -46,4 +118,98 @@ public class MenuInfo {
     public void setConfigFile(File configFile) {
         this.configFile = configFile;
     }
-} 
\ No newline at end of file
+    
+    public MenuTemplate getTemplate() {
+        return template;
+    }
+    
+    public void setTemplate(MenuTemplate template) {
+        this.template = template;
+    }
+    
+    /**
+     * @return How often (in ticks) the dynamic slots of open menus are re-rendered, or 0 to never refresh
+     */
+    public int getRefreshInterval() {
+        return refreshInterval;
+    }
+    
+    public void setRefreshInterval(int refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+    
+    /**
+     * @return Whether all viewers share one inventory, or null to share it if the template is player-independent
+     */
+    public Boolean getShared() {
+        return shared;
+    }
+    
+    public void setShared(Boolean shared) {
+        this.shared = shared;
+    }
+    
+    /**
+     * @return Whether all viewers of the given template of this menu share one inventory.
+     *         Catalog menus are never shared, as each viewer can be on a different page.
+     */
+    public boolean isShared(MenuTemplate template) {
+        if (catalog != null) {
+            return false;
+        }
+        return shared != null ? shared : template.isPlayerIndependent();
+    }
+    
+    /**
+     * @return The catalog shown page by page in this menu, or null if it has none
+     */
+    public Catalog getCatalog() {
+        return catalog;
+    }
+    
+    public void setCatalog(Catalog catalog) {
+        this.catalog = catalog;
+    }
+    
+    /**
+     * @return The clicks per second a player may make in this menu, or null to use the click_rate setting
+     */
+    public Integer getClickRate() {
+        return clickRate;
+    }
+    
+    public void setClickRate(Integer clickRate) {
+        this.clickRate = clickRate;
+    }
+    
+    /**
+     * @return The milliseconds in which a second click on the same slot is ignored,
+     *         or null to use the click_debounce_ms setting
+     */
+    public Integer getClickDebounce() {
+        return clickDebounce;
+    }
+    
+    public void setClickDebounce(Integer clickDebounce) {
+        this.clickDebounce = clickDebounce;
+    }
+    
+    /**
+     * @return Whether the other menu was defined with the same core_menus.csv columns,
+     *         so its open menus look and behave the same under this definition
+     */
+    public boolean hasSameDefinition(MenuInfo other) {
+        return menuId.equals(other.menuId)
+            && menuName.equals(other.menuName)
+            && openCondition.equals(other.openCondition)
+            && permission.equals(other.permission)
+            && escapeable == other.escapeable
+            && refreshInterval == other.refreshInterval
+            && Objects.equals(shared, other.shared)
+            && Objects.equals(clickRate, other.clickRate)
+            && Objects.equals(clickDebounce, other.clickDebounce)
+            && (catalog == null ? other.catalog == null : other.catalog != null
+                && catalog.getFile().equals(other.catalog.getFile())
+                && Arrays.equals(catalog.getSlots(), other.catalog.getSlots()));
+    }
+}
\ No newline at end of file
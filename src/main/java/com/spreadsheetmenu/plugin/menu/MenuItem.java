@@ -1,28 +1,145 @@
 package com.spreadsheetmenu.plugin.menu;
 
+import com.spreadsheetmenu.plugin.condition.Condition;
+import com.spreadsheetmenu.plugin.condition.ConditionParser;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderText;
+import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 public class MenuItem {
-    private final ItemStack item;
+    private final Material material;
+    private final int amount;
+    private final String name;
+    private final List<String> lore;
     private final String command;
+    private final List<MenuAction> actions;
     private final int priority;
     private final String showCondition;
+    private final Condition condition;
+    private final boolean recheck;
+    private final boolean permissionCondition;
+    private final PlaceholderText nameText;
+    private final List<PlaceholderText> loreText;
+    private final boolean dynamic;
+    private final Set<String> placeholderIdentifiers;
+    private ItemStack item; // Built on first use, on the main thread
+
+    public MenuItem(Material material, int amount, String name, List<String> lore,
+                    String command, int priority, String showCondition, Condition condition) {
+        this(material, amount, name, lore, command, priority, showCondition, condition, false);
+    }
 
-    public MenuItem(ItemStack item, String command, int priority, String showCondition) {
-        this.item = item;
+    /**
+     * @param recheck Whether the show conditions of the slot are evaluated again when this item is clicked
+     */
+    public MenuItem(Material material, int amount, String name, List<String> lore,
+                    String command, int priority, String showCondition, Condition condition, boolean recheck) {
+        this.material = material;
+        this.amount = amount;
+        this.name = name;
+        this.lore = List.copyOf(lore);
         this.command = command;
+        this.actions = MenuAction.parse(command);
         this.priority = priority;
         this.showCondition = showCondition;
+        this.condition = condition;
+        this.recheck = recheck;
+        this.permissionCondition = showCondition.contains("%" + ConditionParser.PERMISSION_PREFIX);
+        this.nameText = PlaceholderText.of(name);
+        
+        List<PlaceholderText> loreText = new ArrayList<>(this.lore.size());
+        boolean dynamic = nameText.isDynamic();
+        for (String line : this.lore) {
+            PlaceholderText text = PlaceholderText.of(line);
+            loreText.add(text);
+            dynamic |= text.isDynamic();
+        }
+        this.loreText = List.copyOf(loreText);
+        this.dynamic = dynamic;
+        
+        Set<String> identifiers = new LinkedHashSet<>(nameText.getIdentifiers());
+        for (PlaceholderText text : this.loreText) {
+            identifiers.addAll(text.getIdentifiers());
+        }
+        identifiers.addAll(ConditionParser.getPlaceholderIdentifiers(showCondition));
+        this.placeholderIdentifiers = Set.copyOf(identifiers);
+    }
+
+    /**
+     * Builds the prebuilt stack with the unexpanded name and lore. This goes through the
+     * server's ItemFactory, so it is left to the first render instead of the constructor,
+     * which runs on worker threads when menus are compiled.
+     */
+    private ItemStack createPrototype() {
+        ItemStack stack = new ItemStack(material, amount);
+        ItemMeta meta = stack.getItemMeta();
+
+        if (meta != null) {
+            if (!name.isEmpty()) {
+                meta.setDisplayName(name);
+            }
+            if (!lore.isEmpty()) {
+                meta.setLore(lore);
+            }
+            stack.setItemMeta(meta);
+        }
+
+        return stack;
     }
 
+    /**
+     * Gets the prebuilt prototype stack of this item.
+     * Static items can be placed into inventories directly (Bukkit copies the stack on setItem),
+     * but the returned stack must never be modified. Must be called on the main thread.
+     *
+     * @return The shared prototype stack
+     */
     public ItemStack getItem() {
+        if (item == null) {
+            item = createPrototype();
+        }
         return item;
     }
 
+    public Material getMaterial() {
+        return material;
+    }
+
+    public int getAmount() {
+        return amount;
+    }
+
+    /**
+     * @return The display name with colour codes already translated, or an empty string if none is set
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The lore lines with colour codes already translated
+     */
+    public List<String> getLore() {
+        return lore;
+    }
+
     public String getCommand() {
         return command;
     }
 
+    /**
+     * @return The actions the command was compiled into, empty if the item has no command
+     */
+    public List<MenuAction> getActions() {
+        return actions;
+    }
+
     public int getPriority() {
         return priority;
     }
@@ -30,4 +147,49 @@ public class MenuItem {
     public String getShowCondition() {
         return showCondition;
     }
-} 
\ No newline at end of file
+
+    /**
+     * @return Whether the show condition checks a permission, which OP players bypass
+     */
+    public boolean hasPermissionCondition() {
+        return permissionCondition;
+    }
+
+    /**
+     * @return The compiled show condition (Condition.ALWAYS if none is set)
+     */
+    public Condition getCondition() {
+        return condition;
+    }
+
+    /**
+     * @return true if clicking this item evaluates the show conditions of its slot again
+     *         instead of trusting what was rendered
+     */
+    public boolean isRecheck() {
+        return recheck;
+    }
+
+    public PlaceholderText getNameText() {
+        return nameText;
+    }
+
+    public List<PlaceholderText> getLoreText() {
+        return loreText;
+    }
+
+    /**
+     * @return The identifiers of all placeholders used by the name, lore and show condition,
+     *         except permission checks, which don't go through PlaceholderAPI
+     */
+    public Set<String> getPlaceholderIdentifiers() {
+        return placeholderIdentifiers;
+    }
+
+    /**
+     * @return true if the name or lore contains %placeholder% content that must be expanded per player
+     */
+    public boolean isDynamic() {
+        return dynamic;
+    }
+}
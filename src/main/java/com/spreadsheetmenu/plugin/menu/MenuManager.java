@@ -1,13 +1,15 @@
 package com.spreadsheetmenu.plugin.menu;
 
 import com.spreadsheetmenu.plugin.SpreadsheetMenu;
-import me.clip.placeholderapi.PlaceholderAPI;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
+import com.spreadsheetmenu.plugin.condition.Condition;
+import com.spreadsheetmenu.plugin.config.Catalog;
+import com.spreadsheetmenu.plugin.config.Settings;
+import com.spreadsheetmenu.plugin.metrics.MenuMetrics;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderContext;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderService;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderText;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
@@ -15,106 +17,327 @@ import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.permissions.Permission;
 import org.bukkit.permissions.PermissionDefault;
 
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.Reader;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 public class MenuManager {
     
     private final SpreadsheetMenu plugin;
-    private final Map<UUID, String> openMenus;
-    private final Map<UUID, Inventory> playerMenus;
-    private final Map<UUID, Map<Integer, List<MenuItem>>> playerMenuItems;
-    private final Set<UUID> forcedCloseMenus; // Track players whose menus are being closed by [close] command
+    private final Map<UUID, MenuSession> sessions; // The open menu of each player, readable from any thread
+    private final Map<String, SharedMenu> sharedMenus; // The inventory of each menu that all viewers share
     private final Map<String, Permission> dynamicPermissions; // Cache for dynamically registered permissions
+    private final Map<UUID, PlaceholderContext> pendingOpens; // Opens waiting for async placeholder resolution
+    private final MenuOpenQueue openQueue;
+    private final ActionQueue actionQueue;
+    private final MenuPrerenderer prerenderer;
     
     public MenuManager(SpreadsheetMenu plugin) {
         this.plugin = plugin;
-        this.openMenus = new HashMap<>();
-        this.playerMenus = new HashMap<>();
-        this.playerMenuItems = new HashMap<>();
-        this.forcedCloseMenus = new HashSet<>();
+        this.sessions = new ConcurrentHashMap<>();
+        this.sharedMenus = new ConcurrentHashMap<>();
         this.dynamicPermissions = new HashMap<>();
+        this.pendingOpens = new HashMap<>();
+        this.openQueue = new MenuOpenQueue(plugin, this);
+        this.actionQueue = new ActionQueue(plugin, this);
+        this.prerenderer = new MenuPrerenderer(plugin, this);
     }
     
+    /**
+     * Opens a menu the player asked for. It is opened right away and takes priority
+     * over a bulk open queued for the player.
+     */
     public boolean openMenu(Player player, String menuId) {
-        MenuInfo menuInfo = plugin.getConfigManager().getMenuInfo(menuId);
+        openQueue.cancel(player.getUniqueId());
         
+        MenuInfo menuInfo = findMenu(player, menuId);
+        if (menuInfo == null) {
+            return false;
+        }
+        return prepareOpen(player, menuInfo, context -> completeOpen(player, menuInfo, context, null));
+    }
+    
+    /**
+     * Opens a menu from an [open] action. The menu the player is on is added to their
+     * navigation history once the new menu is open, for [back] to return to, unless an
+     * earlier action like [close] already closed it. If the new menu can't be opened, the
+     * player stays on the current one.
+     * 
+     * @param from The session the action was clicked in
+     */
+    public boolean navigate(Player player, MenuSession from, String menuId) {
+        openQueue.cancel(player.getUniqueId());
+        
+        MenuInfo menuInfo = findMenu(player, menuId);
         if (menuInfo == null) {
-            player.sendMessage(ChatColor.RED + "Menu not found: " + menuId);
             return false;
         }
+        return prepareOpen(player, menuInfo, context -> {
+            NavigationHistory history = from.getHistory();
+            if (!from.isClosing()) {
+                int limit = plugin.getConfigManager().getSettings().getInt("history_size", 5);
+                history = history.push(new NavigationHistory.Entry(from, System.nanoTime()), limit);
+            }
+            if (!completeOpen(player, menuInfo, context, null, history)) {
+                return false;
+            }
+            prerenderer.recordFollow(from.getMenuId(), menuId);
+            return true;
+        });
+    }
+    
+    /**
+     * Returns to the menu the player left with the last [open] action. Its inventory is shown
+     * again as it was left, without checking or rendering the menu, unless it is older than
+     * history_max_age_ms, the menu was reloaded since or its shared inventory was replaced;
+     * then the menu is opened and rendered again.
+     * 
+     * @param from The session the action was clicked in
+     * @param fallbackMenuId The menu to open if there is no previous menu, or an empty string to do nothing
+     * @return Whether a menu was opened
+     */
+    public boolean back(Player player, MenuSession from, String fallbackMenuId) {
+        NavigationHistory history = from.getHistory();
+        NavigationHistory.Entry entry = history.peek();
+        MenuInfo menuInfo = entry != null ? plugin.getConfigManager().getMenuInfo(entry.getMenuId()) : null;
+        if (menuInfo == null) {
+            return !fallbackMenuId.isEmpty() && openMenu(player, fallbackMenuId);
+        }
+        
+        openQueue.cancel(player.getUniqueId());
         
-        // Check permission (bypass for OP players)
-        if (!menuInfo.getPermission().isEmpty() && !player.isOp()) {
-            String permissionName = menuInfo.getPermission();
+        if (isCurrent(entry, menuInfo)) {
+            long start = System.nanoTime();
+            // Shared inventories are kept up to date for their other viewers; use their current state
+            RenderState state = entry.isShared() ? sharedMenus.get(entry.getMenuId()).state : entry.getRenderState();
+            MenuSession session = new MenuSession(player.getUniqueId(), entry.getMenuId(), entry.getInventory(),
+                state, entry.isShared(), entry.getCatalog(), history.pop());
+            session.setPage(entry.getPage());
+            if (!entry.isShared() && entry.getInventory().getHolder(false) instanceof MenuHolder holder) {
+                holder.setSession(session);
+            }
+            show(player, session);
             
-            // Check if this is a PlaceholderAPI condition instead of a permission
-            if (permissionName.startsWith("%") && permissionName.endsWith("%")) {
-                if (Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI")) {
-                    String condition = PlaceholderAPI.setPlaceholders(player, permissionName);
-                    if (!Boolean.parseBoolean(condition)) {
-                        player.sendMessage(ChatColor.RED + "You don't have permission to open this menu.");
-                        return false;
-                    }
-                } else {
-                    plugin.getLogger().warning("Menu " + menuId + " uses PlaceholderAPI condition but PlaceholderAPI is not installed.");
-                    player.sendMessage(ChatColor.RED + "Cannot check permission for this menu.");
-                    return false;
+            MenuMetrics metrics = plugin.getMetrics().menu(entry.getMenuId());
+            metrics.countOpen();
+            metrics.getOpenLatency().recordSince(start);
+            return true;
+        }
+        
+        return prepareOpen(player, menuInfo, context -> completeOpen(player, menuInfo, context, null, history.pop()));
+    }
+    
+    /**
+     * @return Whether the inventory kept in a history entry may be shown again as it is
+     */
+    private boolean isCurrent(NavigationHistory.Entry entry, MenuInfo menuInfo) {
+        long maxAge = plugin.getConfigManager().getSettings().getLong("history_max_age_ms", 30000) * 1_000_000L;
+        if (System.nanoTime() - entry.getLeftAt() > maxAge) {
+            return false;
+        }
+        if (entry.getRenderState().getTemplate() != menuInfo.getTemplate() || entry.getCatalog() != menuInfo.getCatalog()) {
+            return false;
+        }
+        if (entry.isShared()) {
+            SharedMenu shared = sharedMenus.get(entry.getMenuId());
+            return shared != null && shared.inventory == entry.getInventory();
+        }
+        return true;
+    }
+    
+    /**
+     * @return The bulk open queue, see {@link MenuOpenQueue}
+     */
+    public MenuOpenQueue getOpenQueue() {
+        return openQueue;
+    }
+    
+    /**
+     * @return The queue that runs the actions of menu clicks, see {@link ActionQueue}
+     */
+    public ActionQueue getActionQueue() {
+        return actionQueue;
+    }
+    
+    /**
+     * @return The listener that pre-renders likely next menus, see {@link MenuPrerenderer}
+     */
+    public MenuPrerenderer getPrerenderer() {
+        return prerenderer;
+    }
+    
+    MenuInfo findMenu(Player player, String menuId) {
+        MenuInfo menuInfo = plugin.getConfigManager().getMenuInfo(menuId);
+        if (menuInfo == null) {
+            player.sendMessage(ChatColor.RED + "Menu not found: " + menuId);
+        }
+        return menuInfo;
+    }
+    
+    /**
+     * @return Whether the player is waiting for a menu they asked for to open
+     */
+    boolean hasPendingOpen(UUID playerId) {
+        return pendingOpens.containsKey(playerId);
+    }
+    
+    /**
+     * Checks the regular permission of a menu and resolves the placeholders needed to open it.
+     * Once they are resolved, the context is passed to the given callback on the main thread:
+     * right away if async placeholders are disabled, otherwise after the workers are done or
+     * placeholder_timeout_ms has passed, whichever is first; placeholders still missing then
+     * are resolved on the main thread. Only the latest open of a player gets its callback.
+     * 
+     * @return false if the player may not open the menu, otherwise the callback's result
+     *         or true if it will be called later
+     */
+    boolean prepareOpen(Player player, MenuInfo menuInfo, Predicate<PlaceholderContext> then) {
+        return prepareOpen(player, menuInfo, true, then);
+    }
+    
+    /**
+     * @param interactive Whether the player asked for the menu. Only interactive opens are
+     *                    tracked as the player's pending open; queued opens are tracked by
+     *                    MenuOpenQueue, so they never replace an open the player is waiting for
+     */
+    boolean prepareOpen(Player player, MenuInfo menuInfo, boolean interactive, Predicate<PlaceholderContext> then) {
+        String menuId = menuInfo.getMenuId();
+        
+        // Check regular permission (bypass for OP players); it was registered when the config was loaded.
+        // Permission conditions are checked with the other conditions in completeOpen
+        if (!menuInfo.getPermission().isEmpty() && !player.isOp() && menuInfo.getPermissionCondition() == null) {
+            if (!player.hasPermission(menuInfo.getPermission())) {
+                plugin.getMetrics().menu(menuId).countDeniedOpen();
+                player.sendMessage(ChatColor.RED + "You don't have permission to open this menu.");
+                return false;
+            }
+        }
+        
+        PlaceholderService placeholderService = plugin.getPlaceholderService();
+        PlaceholderContext context = placeholderService.createContext(player);
+        
+        if (!placeholderService.isAsyncEnabled()) {
+            return then.test(context);
+        }
+        
+        // Resolve the thread-safe placeholders on worker threads, then render and open
+        // the menu on the main thread. Only the latest open request of a player is completed.
+        List<String> identifiers = new ArrayList<>(menuInfo.getConditionIdentifiers());
+        MenuTemplate template = plugin.getConfigManager().loadTemplate(menuInfo);
+        if (template != null) {
+            identifiers.addAll(template.getPlaceholderIdentifiers());
+        }
+        
+        UUID playerId = player.getUniqueId();
+        if (interactive) {
+            pendingOpens.put(playerId, context);
+        }
+        placeholderService.prefetch(context, identifiers).whenComplete((result, error) -> {
+            if (!plugin.isEnabled()) {
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                boolean current = !interactive || pendingOpens.remove(playerId, context);
+                if (current && player.isOnline()) {
+                    then.test(context);
                 }
-            } else {
-                // Regular permission check
-                // Register the permission dynamically if it doesn't exist
-                ensurePermissionExists(permissionName);
-                
-                if (!player.hasPermission(permissionName)) {
+            });
+        });
+        
+        return true;
+    }
+    
+    /**
+     * Checks the placeholder-based conditions of a menu and opens it.
+     * Must be called on the main thread.
+     * 
+     * @param sharedContents Rendered contents to share between the players of a bulk open, or null
+     */
+    boolean completeOpen(Player player, MenuInfo menuInfo, PlaceholderContext context,
+                         Map<RenderState, ItemStack[]> sharedContents) {
+        return completeOpen(player, menuInfo, context, sharedContents, NavigationHistory.EMPTY);
+    }
+    
+    /**
+     * @param history The navigation history of the new session
+     */
+    private boolean completeOpen(Player player, MenuInfo menuInfo, PlaceholderContext context,
+                                 Map<RenderState, ItemStack[]> sharedContents, NavigationHistory history) {
+        String menuId = menuInfo.getMenuId();
+        MenuMetrics metrics = plugin.getMetrics().menu(menuId);
+        long start = System.nanoTime();
+        
+        // Check permission condition (bypass for OP players). Conditions that only check
+        // permissions are evaluated natively and don't need PlaceholderAPI
+        if (menuInfo.getPermissionCondition() != null && !player.isOp()) {
+            if (!menuInfo.permissionNeedsPlaceholderApi() || plugin.getPlaceholderService().isPlaceholderApiEnabled()) {
+                if (!menuInfo.getPermissionCondition().test(context)) {
+                    metrics.countDeniedOpen();
                     player.sendMessage(ChatColor.RED + "You don't have permission to open this menu.");
                     return false;
                 }
+            } else {
+                plugin.getLogger().warning("Menu " + menuId + " uses PlaceholderAPI condition but PlaceholderAPI is not installed.");
+                player.sendMessage(ChatColor.RED + "Cannot check permission for this menu.");
+                return false;
             }
         }
         
-        // Check open condition if PlaceholderAPI is available
-        if (Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI") && !menuInfo.getOpenCondition().isEmpty()) {
-            String condition = PlaceholderAPI.setPlaceholders(player, menuInfo.getOpenCondition());
-            if (!Boolean.parseBoolean(condition)) {
+        // Check open condition if PlaceholderAPI is available or not needed
+        if (!menuInfo.getOpenCondition().isEmpty()
+                && (!menuInfo.openConditionNeedsPlaceholderApi() || plugin.getPlaceholderService().isPlaceholderApiEnabled())) {
+            if (!menuInfo.getCompiledOpenCondition().test(context)) {
+                metrics.countDeniedOpen();
                 player.sendMessage(ChatColor.RED + "You cannot open this menu right now.");
                 return false;
             }
         }
         
         // Create and open the inventory
-        Inventory inventory = createInventory(player, menuInfo);
-        if (inventory == null) {
+        MenuSession session = createSession(context, menuInfo, sharedContents, history);
+        if (session == null) {
             player.sendMessage(ChatColor.RED + "Failed to create menu: " + menuId);
             return false;
         }
         
-        player.openInventory(inventory);
-        openMenus.put(player.getUniqueId(), menuId);
-        playerMenus.put(player.getUniqueId(), inventory);
+        show(player, session);
         
+        metrics.countOpen();
+        metrics.getOpenLatency().recordSince(start);
         return true;
     }
     
     /**
-     * Ensures that a permission exists in the server's permission system
-     * If it doesn't exist, it will be registered dynamically
-     * 
-     * @param permissionName The name of the permission to check/register
+     * Shows a session's inventory to the player and makes it their open menu
      */
-    public void ensurePermissionExists(String permissionName) {
-        // Check if we've already registered this permission
-        if (dynamicPermissions.containsKey(permissionName)) {
-            return;
+    private void show(Player player, MenuSession session) {
+        // Opening the inventory closes the previous menu; let the close listener know it was replaced
+        MenuSession previous = sessions.get(player.getUniqueId());
+        if (previous != null) {
+            previous.close(MenuSession.CloseReason.REPLACED);
         }
         
-        // Check if the permission already exists in the server
-        if (Bukkit.getPluginManager().getPermission(permissionName) == null) {
-            // Create and register the permission
+        player.openInventory(session.getInventory());
+        sessions.put(player.getUniqueId(), session);
+        prerenderer.schedule(player);
+    }
+    
+    /**
+     * Registers the permissions referenced by the menus in the server's permission system.
+     * Called once per config load with every permission found; permissions that are
+     * already registered, by this plugin or another one, are skipped.
+     * 
+     * @param permissionNames The names of the permissions to register
+     */
+    public void registerPermissions(Collection<String> permissionNames) {
+        int registered = 0;
+        for (String permissionName : permissionNames) {
+            // Check if we've already registered this permission
+            if (dynamicPermissions.containsKey(permissionName)
+                    || Bukkit.getPluginManager().getPermission(permissionName) != null) {
+                continue;
+            }
+            
             Permission permission = new Permission(
                 permissionName,
                 "Dynamically registered permission for menu access",
@@ -123,263 +346,608 @@ public class MenuManager {
             
             Bukkit.getPluginManager().addPermission(permission);
             dynamicPermissions.put(permissionName, permission);
-            plugin.getLogger().info("Dynamically registered permission: " + permissionName);
+            registered++;
+        }
+        
+        if (registered > 0) {
+            plugin.getLogger().info("Dynamically registered " + registered + " menu permissions");
         }
     }
     
-    private Inventory createInventory(Player player, MenuInfo menuInfo) {
-        if (menuInfo.getConfigFile() == null || !menuInfo.getConfigFile().exists()) {
+    /**
+     * Renders a menu for a player into a new inventory, or reuses the inventory
+     * all viewers share if the menu is the same for every player
+     * 
+     * @return The session for the menu, not registered yet, or null if the menu has no template
+     */
+    private MenuSession createSession(PlaceholderContext context, MenuInfo menuInfo,
+                                      Map<RenderState, ItemStack[]> sharedContents, NavigationHistory history) {
+        long start = System.nanoTime();
+        Player player = context.getPlayer();
+        MenuTemplate template = plugin.getConfigManager().loadTemplate(menuInfo);
+        if (template == null) {
             plugin.getLogger().warning("Menu config file not found for: " + menuInfo.getMenuId());
             return null;
         }
         
-        // Determine inventory size (must be a multiple of 9)
-        int inventorySize = 54; // Default to 6 rows
+        if (menuInfo.isShared(template)) {
+            SharedMenu shared = sharedMenus.get(menuInfo.getMenuId());
+            if (shared == null || shared.template != template) {
+                MenuHolder holder = new MenuHolder(menuInfo.getMenuId());
+                Inventory inventory = Bukkit.createInventory(holder, template.getSize(), menuInfo.getMenuName());
+                holder.setInventory(inventory);
+                shared = new SharedMenu(template, inventory, render(context, template, inventory, null));
+                sharedMenus.put(menuInfo.getMenuId(), shared);
+                plugin.getMetrics().menu(menuInfo.getMenuId()).getRenderLatency().recordSince(start);
+            }
+            return new MenuSession(player.getUniqueId(), menuInfo.getMenuId(), shared.inventory, shared.state, true, null,
+                history);
+        }
         
-        // Create inventory
-        Inventory inventory = Bukkit.createInventory(null, inventorySize, menuInfo.getMenuName());
+        // A menu rendered ahead while the server was idle only needs the player's history
+        MenuSession prerendered = prerenderer.take(player, menuInfo, template);
+        if (prerendered != null) {
+            MenuSession session = new MenuSession(player.getUniqueId(), menuInfo.getMenuId(), prerendered.getInventory(),
+                prerendered.getRenderState(), false, prerendered.getCatalog(), history);
+            if (session.getInventory().getHolder(false) instanceof MenuHolder holder) {
+                holder.setSession(session);
+            }
+            return session;
+        }
         
-        // Create a map to store items for each slot
-        Map<Integer, List<MenuItem>> slotItems = new HashMap<>();
+        return renderSession(context, menuInfo, template, sharedContents, history, start);
+    }
+    
+    /**
+     * Renders a menu for a player ahead of time. Must be called on the main thread.
+     * 
+     * @return The rendered session, not registered, or null if the menu has no template
+     */
+    MenuSession prerender(PlaceholderContext context, MenuInfo menuInfo) {
+        MenuTemplate template = menuInfo.getTemplate();
+        if (template == null) {
+            return null;
+        }
+        return renderSession(context, menuInfo, template, null, NavigationHistory.EMPTY, System.nanoTime());
+    }
+    
+    /**
+     * Renders a menu for a player into a new inventory
+     */
+    private MenuSession renderSession(PlaceholderContext context, MenuInfo menuInfo, MenuTemplate template,
+                                      Map<RenderState, ItemStack[]> sharedContents, NavigationHistory history, long start) {
+        Player player = context.getPlayer();
+        MenuHolder holder = new MenuHolder(menuInfo.getMenuId());
+        Inventory inventory = Bukkit.createInventory(holder, template.getSize(), menuInfo.getMenuName());
+        holder.setInventory(inventory);
+        RenderState state = render(context, template, inventory, sharedContents);
+        MenuSession session = new MenuSession(player.getUniqueId(), menuInfo.getMenuId(), inventory, state, false,
+            menuInfo.getCatalog(), history);
+        holder.setSession(session);
+        if (session.getCatalog() != null) {
+            renderCatalogPage(context, session);
+        }
         
-        // Load items from CSV
-        try (Reader reader = new FileReader(menuInfo.getConfigFile());
-             CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT
-                     .withHeader("slot", "material", "amount", "name", "lore", "command", "priority", "show_condition")
-                     .withFirstRecordAsHeader()
-                     .withIgnoreHeaderCase()
-                     .withTrim())) {
-            
-            for (CSVRecord record : csvParser) {
-                try {
-                    int slot = Integer.parseInt(record.get("slot"));
-                    
-                    // Skip if slot is out of bounds
-                    if (slot < 0 || slot >= inventorySize) {
-                        plugin.getLogger().warning("Slot " + slot + " is out of bounds for menu: " + menuInfo.getMenuId());
-                        continue;
-                    }
-                    
-                    // Create item
-                    String materialName = record.get("material").toUpperCase();
-                    Material material = Material.getMaterial(materialName);
-                    
-                    if (material == null) {
-                        plugin.getLogger().warning("Invalid material: " + materialName + " in menu: " + menuInfo.getMenuId());
-                        continue;
-                    }
-                    
-                    int amount = 1;
-                    try {
-                        amount = Integer.parseInt(record.get("amount"));
-                    } catch (NumberFormatException e) {
-                        plugin.getLogger().warning("Invalid amount in menu: " + menuInfo.getMenuId() + ", using default: 1");
-                    }
-                    
-                    ItemStack item = new ItemStack(material, amount);
-                    ItemMeta meta = item.getItemMeta();
-                    
-                    if (meta != null) {
-                        // Set name if provided
-                        String name = record.get("name");
-                        if (!name.isEmpty()) {
-                            name = ChatColor.translateAlternateColorCodes('&', name);
-                            if (Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI")) {
-                                name = PlaceholderAPI.setPlaceholders(player, name);
-                            }
-                            meta.setDisplayName(name);
-                        }
-                        
-                        // Set lore if provided
-                        String loreString = record.get("lore");
-                        if (!loreString.isEmpty()) {
-                            List<String> lore = new ArrayList<>();
-                            for (String line : loreString.split("\\|")) {
-                                line = ChatColor.translateAlternateColorCodes('&', line);
-                                if (Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI")) {
-                                    line = PlaceholderAPI.setPlaceholders(player, line);
-                                }
-                                lore.add(line);
-                            }
-                            meta.setLore(lore);
-                        }
-                        
-                        item.setItemMeta(meta);
-                    }
-                    
-                    int priority = 0;
-                    try {
-                        priority = Integer.parseInt(record.get("priority"));
-                    } catch (NumberFormatException e) {
-                        // Use default priority of 0
-                    }
-                    
-                    String command = record.get("command");
-                    String showCondition = record.get("show_condition");
-                    
-                    // Register any permission used in show_condition
-                    if (!showCondition.isEmpty() && showCondition.contains("player_has_permission_")) {
-                        // Extract permission from condition like %player_has_permission_spreadsheetmenu.items.diamond%
-                        String permissionStr = showCondition.replaceAll("%player_has_permission_([^%]+)%", "$1");
-                        if (!permissionStr.equals(showCondition)) {
-                            // Register the permission dynamically
-                            ensurePermissionExists(permissionStr);
-                        }
-                    }
-                    
-                    MenuItem menuItem = new MenuItem(item, command, priority, showCondition);
-                    
-                    // Add the item to the slot's list
-                    slotItems.computeIfAbsent(slot, k -> new ArrayList<>()).add(menuItem);
-                    
-                } catch (Exception e) {
-                    plugin.getLogger().log(Level.WARNING, "Error loading menu item in " + menuInfo.getMenuId(), e);
+        plugin.getMetrics().menu(menuInfo.getMenuId()).getRenderLatency().recordSince(start);
+        return session;
+    }
+    
+    /**
+     * Renders a template into an empty inventory
+     * 
+     * @param sharedContents Rendered contents to share between the players of a bulk open, or null
+     * @return Which variant each slot shows
+     */
+    private RenderState render(PlaceholderContext context, MenuTemplate template, Inventory inventory,
+                               Map<RenderState, ItemStack[]> sharedContents) {
+        // Choose the highest priority visible item of each slot,
+        // remembering which variant is shown so clicks don't have to work it out again
+        RenderState state = new RenderState(template);
+        boolean dynamic = false;
+        for (int slot = 0; slot < template.getSize(); slot++) {
+            MenuItem[] variants = template.getVariants(slot);
+            if (variants.length == 0) {
+                continue;
+            }
+            int variant = chooseVariant(context, variants);
+            state.setVariant(slot, variant);
+            dynamic |= variant >= 0 && variants[variant].isDynamic();
+        }
+        
+        if (sharedContents != null && !dynamic) {
+            // Without placeholders, players who see the same variants see the same items
+            inventory.setContents(sharedContents.computeIfAbsent(state, MenuManager::createStaticContents));
+        } else {
+            for (int slot = 0; slot < template.getSize(); slot++) {
+                MenuItem item = state.getVisibleItem(slot);
+                if (item != null) {
+                    inventory.setItem(slot, createItemStack(context, item));
                 }
             }
+        }
+        return state;
+    }
+    
+    /**
+     * Builds the contents of a menu whose visible items have no placeholders
+     */
+    private static ItemStack[] createStaticContents(RenderState state) {
+        ItemStack[] contents = new ItemStack[state.getTemplate().getSize()];
+        for (int slot = 0; slot < contents.length; slot++) {
+            MenuItem item = state.getVisibleItem(slot);
+            if (item != null) {
+                contents[slot] = item.getItem();
+            }
+        }
+        return contents;
+    }
+    
+    /**
+     * Finds the highest priority visible item of a slot
+     * (items are already sorted by priority in the template)
+     * 
+     * @return The index of the item to display, or -1 if no item is visible
+     */
+    private int chooseVariant(PlaceholderContext context, MenuItem[] variants) {
+        Player player = context.getPlayer();
+        
+        for (int i = 0; i < variants.length; i++) {
+            MenuItem item = variants[i];
             
-            // Process each slot and set the highest priority visible item
-            for (Map.Entry<Integer, List<MenuItem>> entry : slotItems.entrySet()) {
-                int slot = entry.getKey();
-                List<MenuItem> items = entry.getValue();
-                
-                // Sort items by priority (highest first)
-                items.sort((a, b) -> Integer.compare(b.getPriority(), a.getPriority()));
+            // OP players bypass permission checks
+            if (player.isOp() && item.hasPermissionCondition()) {
+                return i;
+            }
+            
+            if (item.getCondition().test(context)) {
+                return i;
+            }
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * Re-renders the slots of a player's open menu that contain placeholders or show conditions.
+     * Only slots whose item actually changed are updated, so the client receives
+     * the minimum number of slot updates.
+     * 
+     * @param player The player whose menu should be refreshed
+     * @return The number of slots that changed
+     */
+    public int refreshDynamicSlots(Player player) {
+        MenuSession session = sessions.get(player.getUniqueId());
+        if (session == null) {
+            return 0;
+        }
+        
+        if (session.isShared()) {
+            // Refresh a shared inventory once per tick, however many viewers are due
+            SharedMenu shared = sharedMenus.get(session.getMenuId());
+            if (shared == null || shared.inventory != session.getInventory() || shared.refreshedTick == Bukkit.getCurrentTick()) {
+                return 0;
+            }
+            shared.refreshedTick = Bukkit.getCurrentTick();
+        }
+        
+        RenderState state = session.getRenderState();
+        return updateSlots(player, session, state, state.getTemplate().getDynamicSlots());
+    }
+    
+    /**
+     * Re-renders every open instance of a menu in place, e.g. after its template was replaced.
+     * Players keep their inventory open; only slots that changed are updated.
+     * 
+     * @param menuId The ID of the menu to re-render
+     * @return The number of open menus that were re-rendered
+     */
+    public int rerenderOpenMenus(String menuId) {
+        MenuInfo menuInfo = plugin.getConfigManager().getMenuInfo(menuId);
+        MenuTemplate template = menuInfo != null ? menuInfo.getTemplate() : null;
+        if (template == null) {
+            return 0;
+        }
+        
+        int[] slots = new int[template.getSize()];
+        for (int slot = 0; slot < slots.length; slot++) {
+            slots[slot] = slot;
+        }
+        
+        int count = 0;
+        SharedMenu rerendered = null;
+        for (MenuSession session : sessions.values()) {
+            Player player = Bukkit.getPlayer(session.getPlayerId());
+            if (player == null || !menuId.equals(session.getMenuId()) || session.isClosing()) {
+                continue;
+            }
+            
+            if (session.isShared()) {
+                if (!menuInfo.isShared(template)) {
+                    // The menu now depends on the player, so each viewer needs their own inventory
+                    openMenu(player, menuId);
+                    count++;
+                    continue;
+                }
                 
-                // Find the first visible item
-                for (MenuItem item : items) {
-                    String showCondition = item.getShowCondition();
-                    
-                    // OP players bypass permission checks
-                    if (player.isOp() && showCondition.contains("player_has_permission_")) {
-                        inventory.setItem(slot, item.getItem());
-                        break;
-                    }
-                    
-                    if (showCondition.isEmpty() || 
-                        Boolean.parseBoolean(PlaceholderAPI.setPlaceholders(player, showCondition))) {
-                        inventory.setItem(slot, item.getItem());
-                        break;
-                    }
+                // Re-render the shared inventory once, in place, and point every viewer at it
+                if (rerendered == null) {
+                    RenderState state = new RenderState(template);
+                    updateSlots(player, session, state, slots);
+                    rerendered = new SharedMenu(template, session.getInventory(), state);
+                    sharedMenus.put(menuId, rerendered);
                 }
+                session.setRenderState(rerendered.state);
+                count++;
+                continue;
             }
             
-            // Store the items for this player's menu
-            playerMenuItems.put(player.getUniqueId(), slotItems);
-            
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Error reading menu config: " + menuInfo.getMenuId(), e);
+            RenderState state = new RenderState(template);
+            updateSlots(player, session, state, slots);
+            session.setRenderState(state);
+            if (session.getCatalog() != null) {
+                renderCatalogPage(plugin.getPlaceholderService().createContext(player), session);
+            }
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Closes every open instance of a menu, e.g. after it was removed from core_menus.csv
+     * 
+     * @param menuId The ID of the menu to close
+     */
+    public void closeMenus(String menuId) {
+        sharedMenus.remove(menuId);
+        for (MenuSession session : sessions.values()) {
+            Player player = Bukkit.getPlayer(session.getPlayerId());
+            if (player != null && menuId.equals(session.getMenuId())) {
+                closeMenu(player);
+            }
+        }
+    }
+    
+    /**
+     * Renders the catalog rows of the session's current page into its catalog slots
+     */
+    private void renderCatalogPage(PlaceholderContext context, MenuSession session) {
+        Catalog catalog = session.getCatalog();
+        int[] slots = catalog.getSlots();
+        MenuItem[] items = catalog.getPage(session.getPage());
+        
+        for (int i = 0; i < slots.length; i++) {
+            MenuItem item = getCatalogItem(context, items, i);
+            session.getInventory().setItem(slots[i], item != null ? createItemStack(context, item) : null);
+        }
+    }
+    
+    /**
+     * @return The catalog row at the given position of a page if it is visible to the player, otherwise null
+     */
+    private static MenuItem getCatalogItem(PlaceholderContext context, MenuItem[] items, int index) {
+        MenuItem item = index < items.length ? items[index] : null;
+        if (item == null || (item.getCondition() != Condition.ALWAYS && !item.getCondition().test(context))) {
             return null;
         }
+        return item;
+    }
+    
+    /**
+     * Moves a player's catalog menu by the given number of pages, staying within the first and last page
+     */
+    void turnPage(Player player, MenuSession session, int pages) {
+        Catalog catalog = session.getCatalog();
+        if (catalog == null) {
+            return;
+        }
         
-        return inventory;
+        int page = Math.max(0, Math.min(catalog.getPageCount() - 1, session.getPage() + pages));
+        if (page != session.getPage()) {
+            session.setPage(page);
+            renderCatalogPage(plugin.getPlaceholderService().createContext(player), session);
+        }
+    }
+    
+    /**
+     * Renders the given slots of a player's open menu, records the chosen variants
+     * in the render state and sets the slots whose item changed
+     */
+    private int updateSlots(Player player, MenuSession session, RenderState state, int[] slots) {
+        Inventory inventory = session.getInventory();
+        Catalog catalog = session.getCatalog();
+        MenuTemplate template = state.getTemplate();
+        PlaceholderContext context = plugin.getPlaceholderService().createContext(player);
+        int changed = 0;
+        
+        for (int slot : slots) {
+            if (slot >= inventory.getSize() || slot >= template.getSize()
+                    || (catalog != null && catalog.getSlotIndex(slot) >= 0)) {
+                continue;
+            }
+            
+            MenuItem[] variants = template.getVariants(slot);
+            int variant = chooseVariant(context, variants);
+            state.setVariant(slot, variant);
+            ItemStack item = variant >= 0 ? createItemStack(context, variants[variant]) : null;
+            ItemStack current = inventory.getItem(slot);
+            
+            boolean currentEmpty = current == null || current.getType().isAir();
+            if (item == null ? currentEmpty : !currentEmpty && item.equals(current)) {
+                continue;
+            }
+            
+            inventory.setItem(slot, item);
+            changed++;
+        }
+        
+        return changed;
+    }
+    
+    /**
+     * @return The sessions of all players that currently have a menu open
+     */
+    Collection<MenuSession> getSessions() {
+        return sessions.values();
+    }
+    
+    /**
+     * Gets the ItemStack to display for a menu item.
+     * Static items use the prebuilt prototype; only items with placeholders in their
+     * name or lore get a copy of the meta with the placeholders expanded for the player.
+     */
+    private ItemStack createItemStack(PlaceholderContext context, MenuItem menuItem) {
+        if (!menuItem.isDynamic()) {
+            return menuItem.getItem();
+        }
+        
+        ItemStack item = menuItem.getItem().clone();
+        ItemMeta meta = item.getItemMeta();
+        
+        if (meta != null) {
+            if (menuItem.getNameText().isDynamic()) {
+                meta.setDisplayName(context.resolve(menuItem.getNameText()));
+            }
+            
+            if (!menuItem.getLoreText().isEmpty()) {
+                List<String> lore = new ArrayList<>(menuItem.getLoreText().size());
+                for (PlaceholderText line : menuItem.getLoreText()) {
+                    lore.add(context.resolve(line));
+                }
+                meta.setLore(lore);
+            }
+            
+            item.setItemMeta(meta);
+        }
+        
+        return item;
     }
     
     public void closeMenu(Player player) {
-        // Mark this player as having a forced menu close
-        forcedCloseMenus.add(player.getUniqueId());
+        closeMenu(player, MenuSession.CloseReason.PLUGIN);
+    }
+    
+    /**
+     * Closes the menu of a player. The session is marked with the reason before the
+     * inventory is closed, so the close listener doesn't treat it as the player escaping.
+     */
+    public void closeMenu(Player player, MenuSession.CloseReason reason) {
+        pendingOpens.remove(player.getUniqueId());
+        openQueue.cancel(player.getUniqueId());
         
+        MenuSession session = sessions.get(player.getUniqueId());
+        if (session == null) {
+            return;
+        }
+        
+        session.close(reason);
         player.closeInventory();
-        openMenus.remove(player.getUniqueId());
-        playerMenus.remove(player.getUniqueId());
-        playerMenuItems.remove(player.getUniqueId());
+        endSession(session);
+    }
+    
+    /**
+     * Shows the inventory of a non-escapeable menu again after the player closed it. Must be called
+     * on the main thread. The existing inventory is shown as it is, without checking the menu's
+     * permission and open condition or rendering it again. A session that is closed again and
+     * again, like by another plugin closing inventories every tick, is ended instead once it
+     * exceeds reopen_limit reopens in a second.
+     *
+     * @return Whether the menu was scheduled to be reopened on the next tick
+     */
+    public boolean reopenMenu(Player player, MenuSession session) {
+        MenuMetrics metrics = plugin.getMetrics().menu(session.getMenuId());
+        int limit = plugin.getConfigManager().getSettings().getInt("reopen_limit", 10);
+        if (limit > 0 && !session.countReopen(System.nanoTime(), limit)) {
+            metrics.countBrokenReopenLoop();
+            plugin.getLogger().warning("Menu " + session.getMenuId() + " of " + player.getName()
+                + " was closed more than " + limit + " times in a second, not reopening it");
+            endSession(session);
+            return false;
+        }
         
-        // Schedule removal of the forced close flag after a short delay
-        Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            forcedCloseMenus.remove(player.getUniqueId());
-        }, 5L); // 5 ticks (0.25 seconds) should be enough
+        metrics.countReopenLoop();
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            if (player.isOnline() && sessions.get(player.getUniqueId()) == session && !session.isClosing()) {
+                player.openInventory(session.getInventory());
+            }
+        });
+        return true;
+    }
+    
+    /**
+     * Removes a session that was closed. Does nothing if the player has opened another menu since.
+     */
+    public void endSession(MenuSession session) {
+        session.close(MenuSession.CloseReason.PLAYER);
+        if (sessions.remove(session.getPlayerId(), session)) {
+            prerenderer.forget(session.getPlayerId());
+        }
     }
     
     public void closeAllMenus() {
-        for (UUID playerId : new HashSet<>(openMenus.keySet())) {
-            Player player = Bukkit.getPlayer(playerId);
+        for (MenuSession session : sessions.values()) {
+            Player player = Bukkit.getPlayer(session.getPlayerId());
             if (player != null) {
                 closeMenu(player);
             }
         }
-        openMenus.clear();
-        playerMenus.clear();
-        playerMenuItems.clear();
-        forcedCloseMenus.clear();
+        sessions.clear();
+        sharedMenus.clear();
+        pendingOpens.clear();
+        prerenderer.clear();
+    }
+    
+    /**
+     * @return The number of players that have a menu open. May be read from any thread.
+     */
+    public int getOpenMenuCount() {
+        return sessions.size();
+    }
+    
+    /**
+     * @return The session of the player's open menu, or null if no menu is open
+     */
+    public MenuSession getSession(Player player) {
+        return sessions.get(player.getUniqueId());
     }
     
     public String getOpenMenu(Player player) {
-        return openMenus.get(player.getUniqueId());
+        MenuSession session = sessions.get(player.getUniqueId());
+        return session == null ? null : session.getMenuId();
     }
     
-    public boolean isMenuEscapeable(Player player) {
-        // If this is a forced close, always allow it
-        if (forcedCloseMenus.contains(player.getUniqueId())) {
+    /**
+     * @return Whether the session may be closed: true if the plugin closes it or the menu is escapeable
+     */
+    public boolean isMenuEscapeable(MenuSession session) {
+        if (session.isClosing()) {
             return true;
         }
         
-        String menuId = openMenus.get(player.getUniqueId());
-        if (menuId == null) {
+        MenuInfo menuInfo = plugin.getConfigManager().getMenuInfo(session.getMenuId());
+        return menuInfo == null || menuInfo.isEscapeable();
+    }
+    
+    /**
+     * Checks a click against the click rate and debounce limits of the menu before any work is
+     * scheduled for it. Refused clicks are counted as dropped. Must be called on the main
+     * thread, like the rest of the click handling, since it reads the loaded menus.
+     *
+     * @return Whether the click should be handled
+     */
+    public boolean acceptClick(MenuSession session, int slot) {
+        Settings settings = plugin.getConfigManager().getSettings();
+        MenuInfo menuInfo = plugin.getConfigManager().getMenuInfo(session.getMenuId());
+        int rate = menuInfo != null && menuInfo.getClickRate() != null
+            ? menuInfo.getClickRate()
+            : settings.getInt("click_rate", 10);
+        int debounce = menuInfo != null && menuInfo.getClickDebounce() != null
+            ? menuInfo.getClickDebounce()
+            : settings.getInt("click_debounce_ms", 100);
+        
+        long interval = rate > 0 ? 1_000_000_000L / rate : 0;
+        if (session.tryClick(slot, System.nanoTime(), interval, settings.getInt("click_burst", 10), debounce)) {
             return true;
         }
-        
-        MenuInfo menuInfo = plugin.getConfigManager().getMenuInfo(menuId);
-        return menuInfo == null || menuInfo.isEscapeable();
+        plugin.getMetrics().menu(session.getMenuId()).countDroppedClick();
+        return false;
     }
     
-    public boolean isForcedClose(Player player) {
-        return forcedCloseMenus.contains(player.getUniqueId());
+    /**
+     * Handles a click in a menu inventory during the click event. The session comes from the
+     * inventory's holder; only shared inventories need the player's session to be looked up.
+     * Clicks on slots without any action return before the click limits are checked,
+     * and nothing is allocated until a click has actions to run.
+     *
+     * @return Whether an item was clicked
+     */
+    public boolean handleMenuClick(Player player, MenuHolder holder, int slot) {
+        MenuSession session = holder.getSession();
+        if (session == null) {
+            session = sessions.get(player.getUniqueId());
+        }
+        if (session == null || session.isClosing() || session.getInventory() != holder.getInventory()) {
+            return false;
+        }
+        
+        MenuMetrics metrics = plugin.getMetrics().menu(session.getMenuId());
+        metrics.countClick();
+        Catalog catalog = session.getCatalog();
+        if (!session.getRenderState().getTemplate().isClickable(slot) && (catalog == null || catalog.getSlotIndex(slot) < 0)) {
+            return false;
+        }
+        if (!acceptClick(session, slot)) {
+            return false;
+        }
+        
+        long start = System.nanoTime();
+        try {
+            return handleClick(player, session, slot);
+        } finally {
+            metrics.getClickLatency().recordSince(start);
+        }
     }
     
+    /**
+     * Handles a click in the player's open menu without the click limits
+     *
+     * @return Whether an item was clicked
+     */
     public boolean handleMenuClick(Player player, int slot) {
-        String menuId = openMenus.get(player.getUniqueId());
-        if (menuId == null) {
+        MenuSession session = sessions.get(player.getUniqueId());
+        if (session == null || session.isClosing()) {
             return false;
         }
         
-        Map<Integer, List<MenuItem>> slotItems = playerMenuItems.get(player.getUniqueId());
-        if (slotItems == null) {
-            return false;
+        MenuMetrics metrics = plugin.getMetrics().menu(session.getMenuId());
+        metrics.countClick();
+        long start = System.nanoTime();
+        try {
+            return handleClick(player, session, slot);
+        } finally {
+            metrics.getClickLatency().recordSince(start);
         }
+    }
+    
+    private boolean handleClick(Player player, MenuSession session, int slot) {
+        RenderState state = session.getRenderState();
+        Catalog catalog = session.getCatalog();
+        int catalogIndex = catalog != null ? catalog.getSlotIndex(slot) : -1;
         
-        List<MenuItem> items = slotItems.get(slot);
-        if (items == null || items.isEmpty()) {
+        // The visible item was recorded when the slot was rendered; catalog rows come from the cached page
+        MenuItem item = catalogIndex >= 0
+            ? getCatalogItem(plugin.getPlaceholderService().createContext(player), catalog.getPage(session.getPage()), catalogIndex)
+            : state.getVisibleItem(slot);
+        if (item != null && item.isRecheck() && catalogIndex < 0) {
+            // Conditions may have changed since then; render the slot again and use what is visible now
+            updateSlots(player, session, state, new int[] { slot });
+            item = state.getVisibleItem(slot);
+        }
+        if (item == null) {
             return false;
         }
         
-        // Find the first visible item and execute its command
-        for (MenuItem item : items) {
-            String showCondition = item.getShowCondition();
-            
-            // OP players bypass permission checks
-            boolean canUse = player.isOp() && showCondition.contains("player_has_permission_");
-            
-            // Otherwise check the condition normally
-            if (!canUse) {
-                canUse = showCondition.isEmpty() || 
-                    Boolean.parseBoolean(PlaceholderAPI.setPlaceholders(player, showCondition));
-            }
-            
-            if (canUse) {
-                String command = item.getCommand();
-                if (command == null || command.isEmpty()) {
-                    return true;
-                }
-                
-                // Handle special command prefixes
-                if (command.startsWith("[player]")) {
-                    player.performCommand(command.substring(8).trim());
-                } else if (command.startsWith("[console]")) {
-                    Bukkit.dispatchCommand(Bukkit.getConsoleSender(), 
-                        PlaceholderAPI.setPlaceholders(player, command.substring(9).trim()));
-                } else if (command.startsWith("[close]")) {
-                    closeMenu(player);
-                } else if (command.startsWith("[open]")) {
-                    String newMenuId = command.substring(6).trim();
-                    closeMenu(player);
-                    openMenu(player, newMenuId);
-                } else {
-                    player.performCommand(command);
-                }
-                
-                return true;
-            }
+        // The command was compiled into actions when the menu was loaded
+        List<MenuAction> actions = item.getActions();
+        if (!actions.isEmpty()) {
+            actionQueue.submit(player, session, actions);
         }
         
-        return false;
+        return true;
+    }
+    
+    /**
+     * The inventory of a player-independent menu, opened by all of its viewers
+     */
+    private static final class SharedMenu {
+        private final MenuTemplate template;
+        private final Inventory inventory;
+        private final RenderState state;
+        private int refreshedTick = -1;
+        
+        SharedMenu(MenuTemplate template, Inventory inventory, RenderState state) {
+            this.template = template;
+            this.inventory = inventory;
+            this.state = state;
+        }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
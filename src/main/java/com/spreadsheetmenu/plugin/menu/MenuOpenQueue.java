@@ -0,0 +1,140 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderContext;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+/**
+ * Spreads bulk opens, like a selector matching every online player or the join menu
+ * after a restart, over several ticks. Each tick renders queued menus in the order they
+ * were requested until the configured time budget is used up; at least one menu is opened
+ * per tick so the queue always makes progress. Placeholders are resolved when an open is
+ * queued, and opens whose placeholders are not resolved yet don't hold up the ones behind them.
+ *
+ * A player has at most one queued open; queuing another menu replaces the menu but keeps
+ * the player's place. Opens a player asks for themselves are never queued and cancel
+ * the player's queued open, and no open is queued while such an open is still resolving
+ * its placeholders.
+ */
+public class MenuOpenQueue implements Runnable {
+
+    private final SpreadsheetMenu plugin;
+    private final MenuManager menuManager;
+    private final Map<UUID, QueuedOpen> queue;
+    private BukkitTask task;
+
+    MenuOpenQueue(SpreadsheetMenu plugin, MenuManager menuManager) {
+        this.plugin = plugin;
+        this.menuManager = menuManager;
+        this.queue = new LinkedHashMap<>();
+    }
+
+    public void start() {
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+        }
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queue.clear();
+    }
+
+    /**
+     * Queues a menu to be opened for a player. Must be called on the main thread.
+     *
+     * @return false if the menu doesn't exist, the player may not open it or the player
+     *         is already opening a menu they asked for
+     */
+    public boolean enqueue(Player player, String menuId) {
+        if (menuManager.hasPendingOpen(player.getUniqueId())) {
+            return false;
+        }
+        MenuInfo menuInfo = menuManager.findMenu(player, menuId);
+        if (menuInfo == null) {
+            return false;
+        }
+
+        QueuedOpen open = new QueuedOpen(menuInfo);
+        queue.put(player.getUniqueId(), open);
+
+        boolean prepared = menuManager.prepareOpen(player, menuInfo, false, context -> {
+            // Ignore contexts of a queued open that was replaced or cancelled in the meantime
+            if (queue.get(player.getUniqueId()) == open) {
+                open.context = context;
+            }
+            return true;
+        });
+        if (!prepared) {
+            queue.remove(player.getUniqueId(), open);
+        }
+        return prepared;
+    }
+
+    /**
+     * Removes the queued open of a player, if any
+     */
+    public void cancel(UUID playerId) {
+        queue.remove(playerId);
+    }
+
+    /**
+     * @return The number of opens waiting in the queue
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public void run() {
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        long budget = plugin.getConfigManager().getSettings().getLong("open_budget_nanos", 2_000_000L);
+        long start = System.nanoTime();
+        int opened = 0;
+
+        // Players who see the same variants of a static menu share the rendered contents
+        Map<RenderState, ItemStack[]> sharedContents = new HashMap<>();
+
+        Iterator<Map.Entry<UUID, QueuedOpen>> iterator = queue.entrySet().iterator();
+        while (iterator.hasNext() && (opened == 0 || System.nanoTime() - start < budget)) {
+            Map.Entry<UUID, QueuedOpen> entry = iterator.next();
+            QueuedOpen open = entry.getValue();
+            if (open.context == null) {
+                continue;
+            }
+            iterator.remove();
+
+            Player player = Bukkit.getPlayer(entry.getKey());
+            if (player == null || !player.isOnline()) {
+                continue;
+            }
+
+            try {
+                menuManager.completeOpen(player, open.menuInfo, open.context, sharedContents);
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error opening menu " + open.menuInfo.getMenuId() + " for player " + player.getName() + ": " + e.getMessage());
+            }
+            opened++;
+        }
+    }
+
+    private static final class QueuedOpen {
+        private final MenuInfo menuInfo;
+        private PlaceholderContext context; // Set once the placeholders are resolved
+
+        QueuedOpen(MenuInfo menuInfo) {
+            this.menuInfo = menuInfo;
+        }
+    }
+}
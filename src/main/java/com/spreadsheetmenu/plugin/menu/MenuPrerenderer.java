@@ -0,0 +1,186 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import com.spreadsheetmenu.plugin.config.Settings;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+
+import java.util.*;
+
+/**
+ * Renders the menus a player is likely to open next while the server has time left at the
+ * end of a tick. When a player's menu changes, the menus it links to (see {@link MenuGraph})
+ * are rendered for the player into inventories that are kept until the player opens one of
+ * them or moves on; opening one then skips rendering. The links players follow most from a
+ * menu are rendered first. Player-independent menus are already shared and catalog menus
+ * read their pages from disk, so neither is pre-rendered. Main thread only.
+ */
+public class MenuPrerenderer implements Listener {
+
+    private final SpreadsheetMenu plugin;
+    private final MenuManager menuManager;
+    private final Set<UUID> pending; // Players whose menu changed and may need pre-renders
+    private final Map<UUID, Prerendered> prerendered;
+    private final Map<String, Map<String, Integer>> follows; // How often each link was followed
+
+    MenuPrerenderer(SpreadsheetMenu plugin, MenuManager menuManager) {
+        this.plugin = plugin;
+        this.menuManager = menuManager;
+        this.pending = new LinkedHashSet<>();
+        this.prerendered = new HashMap<>();
+        this.follows = new HashMap<>();
+    }
+
+    @EventHandler
+    public void onTickEnd(ServerTickEndEvent event) {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // Only use time the server would otherwise spend waiting for the next tick
+        Settings settings = plugin.getConfigManager().getSettings();
+        long budget = Math.min(event.getTimeRemaining(), settings.getLong("prerender_budget_micros", 1000) * 1000L);
+        if (budget <= 0) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + budget;
+        int limit = settings.getInt("prerender_limit", 3);
+        Iterator<UUID> players = pending.iterator();
+        while (players.hasNext() && System.nanoTime() - deadline < 0) {
+            if (!prerenderNext(players.next(), limit)) {
+                players.remove();
+            }
+        }
+    }
+
+    /**
+     * Renders the next likely menu of a player
+     *
+     * @return Whether there may be more to render for the player
+     */
+    private boolean prerenderNext(UUID playerId, int limit) {
+        Player player = Bukkit.getPlayer(playerId);
+        MenuSession session = player != null ? menuManager.getSession(player) : null;
+        if (session == null || session.isClosing()) {
+            prerendered.remove(playerId);
+            return false;
+        }
+
+        // Pre-renders for a previous menu are for the wrong links
+        Prerendered menus = prerendered.get(playerId);
+        if (menus == null || menus.source != session) {
+            menus = new Prerendered(session);
+            prerendered.put(playerId, menus);
+        }
+
+        for (String target : getLikelyLinks(session.getMenuId(), limit)) {
+            if (menus.sessions.containsKey(target)) {
+                continue;
+            }
+
+            MenuInfo menuInfo = plugin.getConfigManager().getMenuInfo(target);
+            MenuTemplate template = menuInfo != null ? menuInfo.getTemplate() : null;
+            String permission = menuInfo != null ? menuInfo.getPermission() : "";
+            if (template == null || menuInfo.isShared(template) || menuInfo.getCatalog() != null
+                    || (!permission.isEmpty() && !permission.startsWith("%") && !player.hasPermission(permission))) {
+                menus.sessions.put(target, null);
+                continue;
+            }
+
+            MenuSession rendered = menuManager.prerender(plugin.getPlaceholderService().createContext(player), menuInfo);
+            menus.sessions.put(target, rendered != null ? new Rendered(rendered, System.nanoTime()) : null);
+            plugin.getMetrics().countPrerender();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Up to limit menus the given menu links to, the most followed first
+     */
+    private List<String> getLikelyLinks(String menuId, int limit) {
+        List<String> links = plugin.getConfigManager().getMenuGraph().getLinks(menuId);
+        Map<String, Integer> counts = follows.get(menuId);
+        if (counts != null && links.size() > 1) {
+            links = new ArrayList<>(links);
+            links.sort(Comparator.comparingInt((String target) -> counts.getOrDefault(target, 0)).reversed());
+        }
+        return links.subList(0, Math.min(Math.max(0, limit), links.size()));
+    }
+
+    /**
+     * Notes that the player has a new menu open, so its links are pre-rendered at the end of the tick
+     */
+    void schedule(Player player) {
+        pending.add(player.getUniqueId());
+    }
+
+    /**
+     * Counts a link a player followed with [open], to pre-render the most followed links first
+     */
+    void recordFollow(String fromMenuId, String toMenuId) {
+        follows.computeIfAbsent(fromMenuId, k -> new HashMap<>()).merge(toMenuId, 1, Integer::sum);
+    }
+
+    /**
+     * Takes the pre-rendered session of a menu for the player if it is still usable:
+     * rendered from the current template no longer than prerender_max_age_ms ago
+     *
+     * @return The unregistered session, or null to render the menu
+     */
+    MenuSession take(Player player, MenuInfo menuInfo, MenuTemplate template) {
+        Prerendered menus = prerendered.get(player.getUniqueId());
+        Rendered rendered = menus != null ? menus.sessions.remove(menuInfo.getMenuId()) : null;
+        if (rendered == null || rendered.session.getRenderState().getTemplate() != template) {
+            return null;
+        }
+
+        long maxAge = plugin.getConfigManager().getSettings().getLong("prerender_max_age_ms", 5000) * 1_000_000L;
+        if (System.nanoTime() - rendered.renderedAt > maxAge) {
+            return null;
+        }
+
+        plugin.getMetrics().countPrerenderHit();
+        return rendered.session;
+    }
+
+    /**
+     * Drops the pre-renders of a player whose menu was closed
+     */
+    void forget(UUID playerId) {
+        pending.remove(playerId);
+        prerendered.remove(playerId);
+    }
+
+    void clear() {
+        pending.clear();
+        prerendered.clear();
+    }
+
+    /**
+     * The menus pre-rendered for the links of one open menu
+     */
+    private static final class Prerendered {
+        private final MenuSession source;
+        private final Map<String, Rendered> sessions; // null values mark links that aren't pre-rendered
+
+        Prerendered(MenuSession source) {
+            this.source = source;
+            this.sessions = new HashMap<>();
+        }
+    }
+
+    private static final class Rendered {
+        private final MenuSession session;
+        private final long renderedAt;
+
+        Rendered(MenuSession session, long renderedAt) {
+            this.session = session;
+            this.renderedAt = renderedAt;
+        }
+    }
+}
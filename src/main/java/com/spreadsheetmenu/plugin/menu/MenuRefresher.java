@@ -0,0 +1,89 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+
+/**
+ * Periodically re-renders the dynamic slots of open menus that have a refresh_interval.
+ * A single task serves every viewer: players are spread over the interval by their UUID,
+ * and each tick only refreshes as many players as fit in the configured time budget.
+ * Players that don't fit stay queued for the next tick.
+ */
+public class MenuRefresher implements Runnable {
+    
+    private final SpreadsheetMenu plugin;
+    private final Deque<UUID> queue;
+    private final Set<UUID> queued;
+    private BukkitTask task;
+    private long tick;
+    
+    public MenuRefresher(SpreadsheetMenu plugin) {
+        this.plugin = plugin;
+        this.queue = new ArrayDeque<>();
+        this.queued = new HashSet<>();
+    }
+    
+    public void start() {
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this, 1L, 1L);
+        }
+    }
+    
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queue.clear();
+        queued.clear();
+    }
+    
+    @Override
+    public void run() {
+        tick++;
+        MenuManager menuManager = plugin.getMenuManager();
+        
+        // Queue the viewers whose refresh is due this tick
+        for (MenuSession session : menuManager.getSessions()) {
+            MenuInfo menuInfo = plugin.getConfigManager().getMenuInfo(session.getMenuId());
+            if (menuInfo == null || menuInfo.getRefreshInterval() <= 0) {
+                continue;
+            }
+            
+            // Viewers of a shared inventory are due together, so it is refreshed once for all of them
+            UUID playerId = session.getPlayerId();
+            long offset = session.isShared() ? 0 : playerId.hashCode() & 0x7fffffffL;
+            if ((tick + offset) % menuInfo.getRefreshInterval() == 0 && queued.add(playerId)) {
+                queue.addLast(playerId);
+            }
+        }
+        
+        if (queue.isEmpty()) {
+            return;
+        }
+        
+        // Refresh as many queued viewers as the budget allows
+        long budget = plugin.getConfigManager().getSettings().getLong("refresh_budget_micros", 2000) * 1000L;
+        long start = System.nanoTime();
+        
+        while (!queue.isEmpty() && System.nanoTime() - start < budget) {
+            UUID playerId = queue.pollFirst();
+            queued.remove(playerId);
+            
+            Player player = Bukkit.getPlayer(playerId);
+            if (player == null || !player.isOnline()) {
+                continue;
+            }
+            
+            try {
+                menuManager.refreshDynamicSlots(player);
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error refreshing menu for player " + player.getName() + ": " + e.getMessage());
+            }
+        }
+    }
+}
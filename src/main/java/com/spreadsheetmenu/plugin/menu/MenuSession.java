@@ -0,0 +1,194 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import com.spreadsheetmenu.plugin.config.Catalog;
+import org.bukkit.inventory.Inventory;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A menu a player currently has open: the menu ID, the inventory shown to the player
+ * and what each slot shows. Sessions are kept in a concurrent map by the MenuManager,
+ * so they can be read from any thread; they are only changed on the main thread.
+ */
+public class MenuSession {
+
+    /**
+     * Why a session ended. Set before the inventory is closed, so the close listener
+     * can tell a player closing the menu apart from a close started by the plugin.
+     */
+    public enum CloseReason {
+        /** The player closed the inventory */
+        PLAYER,
+        /** The plugin closed the menu, e.g. a [close] command or a reload */
+        PLUGIN,
+        /** Another menu was opened in its place */
+        REPLACED,
+        /** The player left the server */
+        QUIT
+    }
+
+    private final UUID playerId;
+    private final String menuId;
+    private final Inventory inventory;
+    private final boolean shared;
+    private final Catalog catalog;
+    private final NavigationHistory history;
+    private volatile int page;
+    private volatile RenderState renderState;
+    private volatile CloseReason closeReason;
+    private final AtomicLong clickAllowedAt; // When the click allowance is used up (nanoTime), see tryClick
+    private final AtomicLong lastClick; // Milliseconds since opening << 6 | slot of the last handled click
+    private final long openedAt;
+    private long reopenWindowStart; // Main thread only, see countReopen
+    private int reopens;
+
+    /**
+     * @param shared Whether the inventory and render state are shared with the other viewers of the menu
+     * @param catalog The catalog shown page by page in the menu, or null
+     */
+    public MenuSession(UUID playerId, String menuId, Inventory inventory, RenderState renderState, boolean shared,
+                       Catalog catalog) {
+        this(playerId, menuId, inventory, renderState, shared, catalog, NavigationHistory.EMPTY);
+    }
+    
+    /**
+     * @param history The menus the player left with [open] to get here
+     */
+    MenuSession(UUID playerId, String menuId, Inventory inventory, RenderState renderState, boolean shared,
+                Catalog catalog, NavigationHistory history) {
+        this.playerId = playerId;
+        this.menuId = menuId;
+        this.inventory = inventory;
+        this.renderState = renderState;
+        this.shared = shared;
+        this.catalog = catalog;
+        this.history = history;
+        this.openedAt = System.nanoTime();
+        this.clickAllowedAt = new AtomicLong(openedAt);
+        this.lastClick = new AtomicLong(-1);
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    public String getMenuId() {
+        return menuId;
+    }
+
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * @return Whether the inventory is shared by every viewer of the menu
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * @return The catalog shown page by page in the menu, or null if it has none
+     */
+    public Catalog getCatalog() {
+        return catalog;
+    }
+
+    NavigationHistory getHistory() {
+        return history;
+    }
+    
+    /**
+     * @return The catalog page the player is on, starting at 0
+     */
+    public int getPage() {
+        return page;
+    }
+
+    void setPage(int page) {
+        this.page = page;
+    }
+
+    public RenderState getRenderState() {
+        return renderState;
+    }
+
+    void setRenderState(RenderState renderState) {
+        this.renderState = renderState;
+    }
+
+    /**
+     * @return Why the session is being closed, or null while it is open
+     */
+    public CloseReason getCloseReason() {
+        return closeReason;
+    }
+
+    public boolean isClosing() {
+        return closeReason != null;
+    }
+
+    /**
+     * Takes a click from the player's allowance. The allowance is a token bucket kept as a single
+     * timestamp: every click moves it forward by one interval, and a click is refused while it is
+     * more than a burst ahead of now. A second click on the same slot within the debounce time
+     * is refused without using the allowance.
+     *
+     * @param now System.nanoTime() of the click
+     * @param interval Nanoseconds per click at the sustained rate, or 0 for no rate limit
+     * @param burst Clicks that may be made in a row before the rate applies
+     * @param debounceMillis Milliseconds in which a second click on the same slot is refused, or 0
+     * @return Whether the click may be handled
+     */
+    boolean tryClick(int slot, long now, long interval, int burst, long debounceMillis) {
+        long millis = (now - openedAt) / 1_000_000L;
+        if (debounceMillis > 0) {
+            long previous = lastClick.get();
+            if (previous >= 0 && (previous & 63) == slot && millis - (previous >>> 6) < debounceMillis) {
+                return false;
+            }
+        }
+        
+        if (interval > 0) {
+            long limit = interval * Math.max(1, burst);
+            while (true) {
+                long allowedAt = clickAllowedAt.get();
+                long next = (allowedAt - now > 0 ? allowedAt : now) + interval;
+                if (next - now > limit) {
+                    return false;
+                }
+                if (clickAllowedAt.compareAndSet(allowedAt, next)) {
+                    break;
+                }
+            }
+        }
+        
+        lastClick.set(millis << 6 | slot);
+        return true;
+    }
+    
+    /**
+     * Counts a reopen after the player closed the non-escapeable menu
+     *
+     * @param now System.nanoTime() of the close
+     * @param limit The number of reopens allowed within one second
+     * @return false if the menu was reopened more than the limit within the last second
+     */
+    boolean countReopen(long now, int limit) {
+        if (reopens == 0 || now - reopenWindowStart > 1_000_000_000L) {
+            reopenWindowStart = now;
+            reopens = 0;
+        }
+        return ++reopens <= limit;
+    }
+    
+    /**
+     * Marks the session as closing. The first reason wins.
+     */
+    void close(CloseReason reason) {
+        if (closeReason == null) {
+            closeReason = reason;
+        }
+    }
+}
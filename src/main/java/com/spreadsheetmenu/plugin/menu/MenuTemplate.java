@@ -0,0 +1,142 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import com.spreadsheetmenu.plugin.condition.Condition;
+
+import java.util.*;
+
+/**
+ * Immutable, compiled form of a menu CSV file.
+ * Built once by the ConfigManager when configs are loaded so that opening a menu
+ * only has to do per-player work (placeholders and show conditions).
+ */
+public class MenuTemplate {
+    
+    /** RenderState stores the visible variant of a slot in one unsigned byte, 255 meaning none */
+    public static final int MAX_VARIANTS = 255;
+    
+    private static final MenuItem[] NO_VARIANTS = new MenuItem[0];
+    
+    private final String menuId;
+    private final int size;
+    private final Map<Integer, List<MenuItem>> slotItems;
+    private final MenuItem[][] variants;
+    private final Set<String> placeholderIdentifiers;
+    private final int[] dynamicSlots;
+    private final boolean[] clickable;
+    private final boolean playerIndependent;
+    
+    /**
+     * @param menuId The ID of the menu this template belongs to
+     * @param size The inventory size (must be a multiple of 9)
+     * @param slotItems The items of each slot, in file order
+     */
+    public MenuTemplate(String menuId, int size, Map<Integer, List<MenuItem>> slotItems) {
+        this.menuId = menuId;
+        this.size = size;
+        
+        // Sort each slot by priority (highest first). The sort is stable, so items
+        // with the same priority keep their order from the file.
+        Map<Integer, List<MenuItem>> sorted = new TreeMap<>();
+        Set<String> identifiers = new LinkedHashSet<>();
+        for (Map.Entry<Integer, List<MenuItem>> entry : slotItems.entrySet()) {
+            List<MenuItem> items = new ArrayList<>(entry.getValue());
+            items.sort((a, b) -> Integer.compare(b.getPriority(), a.getPriority()));
+            sorted.put(entry.getKey(), List.copyOf(items));
+            
+            for (MenuItem item : items) {
+                identifiers.addAll(item.getPlaceholderIdentifiers());
+            }
+        }
+        this.slotItems = Collections.unmodifiableMap(sorted);
+        
+        // Slot-indexed copy for lookups that shouldn't box the slot number
+        this.variants = new MenuItem[size][];
+        Arrays.fill(variants, NO_VARIANTS);
+        for (Map.Entry<Integer, List<MenuItem>> entry : sorted.entrySet()) {
+            if (entry.getKey() >= 0 && entry.getKey() < size) {
+                variants[entry.getKey()] = entry.getValue().toArray(NO_VARIANTS);
+            }
+        }
+        this.clickable = new boolean[size];
+        for (int slot = 0; slot < size; slot++) {
+            for (MenuItem item : variants[slot]) {
+                clickable[slot] |= !item.getActions().isEmpty();
+            }
+        }
+        this.placeholderIdentifiers = Set.copyOf(identifiers);
+        this.dynamicSlots = this.slotItems.entrySet().stream()
+            .filter(entry -> entry.getValue().stream().anyMatch(MenuTemplate::isDynamic))
+            .mapToInt(Map.Entry::getKey)
+            .toArray();
+        
+        // Every player sees the same items if the top item of each slot is always shown and has no placeholders
+        boolean independent = true;
+        for (MenuItem[] slotVariants : variants) {
+            if (slotVariants.length > 0 && (slotVariants[0].getCondition() != Condition.ALWAYS || slotVariants[0].isDynamic())) {
+                independent = false;
+                break;
+            }
+        }
+        this.playerIndependent = independent;
+    }
+    
+    public String getMenuId() {
+        return menuId;
+    }
+    
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * @return An unmodifiable map of slot number to the items of that slot, sorted by priority (highest first)
+     */
+    public Map<Integer, List<MenuItem>> getSlotItems() {
+        return slotItems;
+    }
+    
+    /**
+     * @param slot The slot number, which must be within the menu size
+     * @return The items of the slot sorted by priority (highest first). The returned array must not be modified.
+     */
+    public MenuItem[] getVariants(int slot) {
+        return variants[slot];
+    }
+    
+    /**
+     * @return Whether any item of the slot has an action, so clicks on other slots can be ignored right away
+     */
+    public boolean isClickable(int slot) {
+        return slot >= 0 && slot < size && clickable[slot];
+    }
+    
+    /**
+     * @return The identifiers of every placeholder a render of this menu may need
+     */
+    public Set<String> getPlaceholderIdentifiers() {
+        return placeholderIdentifiers;
+    }
+    
+    /**
+     * @return The slots whose displayed item can differ between renders
+     *         (an item has placeholders or a show condition). The returned array must not be modified.
+     */
+    public int[] getDynamicSlots() {
+        return dynamicSlots;
+    }
+    
+    /**
+     * @return Whether every player sees exactly the same items, so one inventory can be shared by all viewers
+     */
+    public boolean isPlayerIndependent() {
+        return playerIndependent;
+    }
+    
+    private static boolean isDynamic(MenuItem item) {
+        return item.isDynamic() || (item.getCondition() != Condition.ALWAYS && item.getCondition() != Condition.NEVER);
+    }
+    
+    public boolean isEmpty() {
+        return slotItems.isEmpty();
+    }
+}
@@ -0,0 +1,118 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import com.spreadsheetmenu.plugin.config.Catalog;
+import org.bukkit.inventory.Inventory;
+
+/**
+ * The menus a player left with [open], most recent first, for the [back] action.
+ * Each entry keeps the rendered inventory of the menu it was left on, so going back
+ * can show it again without rendering it. Histories are immutable and bounded:
+ * pushing onto a full history drops the oldest entry, so a player holds at most
+ * history_size inventories.
+ */
+final class NavigationHistory {
+
+    static final NavigationHistory EMPTY = new NavigationHistory(null, null, 0);
+
+    private final Entry entry;
+    private final NavigationHistory previous;
+    private final int size;
+
+    private NavigationHistory(Entry entry, NavigationHistory previous, int size) {
+        this.entry = entry;
+        this.previous = previous;
+        this.size = size;
+    }
+
+    /**
+     * @param limit The maximum number of entries to keep
+     * @return A history with the entry on top, without the oldest entries beyond the limit
+     */
+    NavigationHistory push(Entry entry, int limit) {
+        if (limit <= 0) {
+            return EMPTY;
+        }
+        NavigationHistory kept = size < limit ? this : take(limit - 1);
+        return new NavigationHistory(entry, kept, kept.size + 1);
+    }
+
+    private NavigationHistory take(int count) {
+        return count <= 0 ? EMPTY : new NavigationHistory(entry, previous.take(count - 1), count);
+    }
+
+    /**
+     * @return The most recently left menu, or null if the history is empty
+     */
+    Entry peek() {
+        return entry;
+    }
+
+    /**
+     * @return The history without its most recent entry
+     */
+    NavigationHistory pop() {
+        return previous != null ? previous : EMPTY;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * A menu as it was when the player left it
+     */
+    static final class Entry {
+        private final String menuId;
+        private final Inventory inventory;
+        private final RenderState renderState;
+        private final boolean shared;
+        private final Catalog catalog;
+        private final int page;
+        private final long leftAt;
+
+        Entry(MenuSession session, long leftAt) {
+            this.menuId = session.getMenuId();
+            this.inventory = session.getInventory();
+            this.renderState = session.getRenderState();
+            this.shared = session.isShared();
+            this.catalog = session.getCatalog();
+            this.page = session.getPage();
+            this.leftAt = leftAt;
+        }
+
+        String getMenuId() {
+            return menuId;
+        }
+
+        Inventory getInventory() {
+            return inventory;
+        }
+
+        RenderState getRenderState() {
+            return renderState;
+        }
+
+        boolean isShared() {
+            return shared;
+        }
+
+        Catalog getCatalog() {
+            return catalog;
+        }
+
+        int getPage() {
+            return page;
+        }
+
+        /**
+         * @return System.nanoTime() of when the player left the menu
+         */
+        long getLeftAt() {
+            return leftAt;
+        }
+    }
+}
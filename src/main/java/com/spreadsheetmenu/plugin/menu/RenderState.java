@@ -0,0 +1,74 @@
+package com.spreadsheetmenu.plugin.menu;
+
+import java.util.Arrays;
+
+/**
+ * What a player's open menu currently shows: the shared template it was rendered from
+ * and, per slot, the index of the visible variant in the slot's priority-sorted item list.
+ * Clicks look the item up here instead of evaluating the show conditions again.
+ */
+public class RenderState {
+
+    private static final byte NONE = -1;
+
+    private final MenuTemplate template;
+    private final byte[] variants;
+
+    public RenderState(MenuTemplate template) {
+        this.template = template;
+        this.variants = new byte[template.getSize()];
+        Arrays.fill(variants, NONE);
+    }
+
+    public MenuTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * @param slot The slot
+     * @param variant The index of the visible item in the slot, or -1 if the slot is empty
+     */
+    public void setVariant(int slot, int variant) {
+        variants[slot] = (byte) variant;
+    }
+
+    /**
+     * @return The index of the visible item in the slot, or -1 if the slot is empty
+     */
+    public int getVariant(int slot) {
+        if (slot < 0 || slot >= variants.length) {
+            return -1;
+        }
+        byte variant = variants[slot];
+        return variant == NONE ? -1 : variant & 0xFF;
+    }
+
+    /**
+     * @return The item the player sees in the slot, or null if the slot is empty
+     */
+    public MenuItem getVisibleItem(int slot) {
+        int variant = getVariant(slot);
+        return variant < 0 ? null : template.getVariants(slot)[variant];
+    }
+
+    /**
+     * Render states are equal if they show the same variants of the same template.
+     * Only use them as keys while they are not changed, e.g. within one tick.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RenderState)) {
+            return false;
+        }
+        RenderState other = (RenderState) o;
+        return template == other.template && Arrays.equals(variants, other.variants);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(template) + Arrays.hashCode(variants);
+    }
+}
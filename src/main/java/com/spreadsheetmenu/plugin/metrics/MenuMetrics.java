@@ -0,0 +1,115 @@
+package com.spreadsheetmenu.plugin.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latencies of a single menu
+ */
+public class MenuMetrics {
+
+    private final String menuId;
+    private final LongAdder opens;
+    private final LongAdder deniedOpens;
+    private final LongAdder clicks;
+    private final LongAdder droppedClicks;
+    private final LongAdder reopenLoops;
+    private final LongAdder brokenReopenLoops;
+    private final LatencyHistogram openLatency;
+    private final LatencyHistogram renderLatency;
+    private final LatencyHistogram clickLatency;
+
+    public MenuMetrics(String menuId) {
+        this.menuId = menuId;
+        this.opens = new LongAdder();
+        this.deniedOpens = new LongAdder();
+        this.clicks = new LongAdder();
+        this.droppedClicks = new LongAdder();
+        this.reopenLoops = new LongAdder();
+        this.brokenReopenLoops = new LongAdder();
+        this.openLatency = new LatencyHistogram();
+        this.renderLatency = new LatencyHistogram();
+        this.clickLatency = new LatencyHistogram();
+    }
+
+    public String getMenuId() {
+        return menuId;
+    }
+
+    public void countOpen() {
+        opens.increment();
+    }
+
+    public void countDeniedOpen() {
+        deniedOpens.increment();
+    }
+
+    public void countClick() {
+        clicks.increment();
+    }
+
+    /**
+     * Counts a click that was ignored because of the click rate or debounce limits
+     */
+    public void countDroppedClick() {
+        droppedClicks.increment();
+    }
+
+    /**
+     * Counts a menu that was reopened because a player closed a non-escapeable menu
+     */
+    public void countReopenLoop() {
+        reopenLoops.increment();
+    }
+
+    public long getOpens() {
+        return opens.sum();
+    }
+
+    public long getDeniedOpens() {
+        return deniedOpens.sum();
+    }
+
+    public long getClicks() {
+        return clicks.sum();
+    }
+
+    public long getDroppedClicks() {
+        return droppedClicks.sum();
+    }
+
+    public long getReopenLoops() {
+        return reopenLoops.sum();
+    }
+
+    /**
+     * Counts a non-escapeable menu that was not reopened because it was closed too often in a second
+     */
+    public void countBrokenReopenLoop() {
+        brokenReopenLoops.increment();
+    }
+
+    public long getBrokenReopenLoops() {
+        return brokenReopenLoops.sum();
+    }
+
+    /**
+     * @return Time on the main thread to check the conditions, render and show the menu
+     */
+    public LatencyHistogram getOpenLatency() {
+        return openLatency;
+    }
+
+    /**
+     * @return Time to create the inventory and render its items
+     */
+    public LatencyHistogram getRenderLatency() {
+        return renderLatency;
+    }
+
+    /**
+     * @return Time to handle a click, including the command it runs
+     */
+    public LatencyHistogram getClickLatency() {
+        return clickLatency;
+    }
+}
@@ -0,0 +1,62 @@
+package com.spreadsheetmenu.plugin.metrics;
+
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import com.spreadsheetmenu.plugin.placeholder.PlaceholderService;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+
+/**
+ * Periodically writes the metrics to metrics.prom in the data folder, in the Prometheus
+ * text format, so the node exporter's textfile collector can pick them up.
+ * The file is written off the main thread and replaced atomically.
+ */
+public class MetricsExporter {
+
+    private final SpreadsheetMenu plugin;
+    private final Path file;
+    private BukkitTask task;
+
+    public MetricsExporter(SpreadsheetMenu plugin) {
+        this.plugin = plugin;
+        this.file = plugin.getDataFolder().toPath().resolve("metrics.prom");
+    }
+
+    /**
+     * Starts the export if metrics_export_interval is set
+     */
+    public void start() {
+        long intervalSeconds = plugin.getConfigManager().getSettings().getLong("metrics_export_interval", 0);
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        long ticks = intervalSeconds * 20;
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::export, ticks, ticks);
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void export() {
+        PlaceholderService placeholderService = plugin.getPlaceholderService();
+        String text = plugin.getMetrics().toPrometheus(placeholderService.getCacheHits(), placeholderService.getCacheMisses());
+
+        try {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, text, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to write metrics.prom", e);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.spreadsheetmenu.plugin.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Holds the plugin's metrics. Recording only touches LongAdders and atomic arrays,
+ * so it is safe and cheap from any thread; per-menu metrics are created on first use.
+ */
+public class MetricsRegistry {
+
+    /** Histogram buckets written to the Prometheus file: 1µs up to about 34s */
+    private static final int FIRST_EXPORTED_BUCKET = 10;
+    private static final int LAST_EXPORTED_BUCKET = 35;
+
+    private final Map<String, MenuMetrics> menus;
+    private final LatencyHistogram configLoadLatency;
+    private final LatencyHistogram placeholderLatency;
+    private final LatencyHistogram actionDelay;
+    private final AtomicInteger actionQueueMaxDepth;
+    private final LongAdder prerenders;
+    private final LongAdder prerenderHits;
+    private final LongAdder templateLoads;
+    private final LongAdder templateEvictions;
+    private volatile IntSupplier openSessions;
+    private volatile IntSupplier actionQueueDepth;
+    private volatile IntSupplier loadedTemplates;
+    private volatile LongSupplier loadedTemplateBytes;
+
+    public MetricsRegistry() {
+        this.menus = new ConcurrentHashMap<>();
+        this.configLoadLatency = new LatencyHistogram();
+        this.placeholderLatency = new LatencyHistogram();
+        this.actionDelay = new LatencyHistogram();
+        this.actionQueueMaxDepth = new AtomicInteger();
+        this.prerenders = new LongAdder();
+        this.prerenderHits = new LongAdder();
+        this.templateLoads = new LongAdder();
+        this.templateEvictions = new LongAdder();
+        this.openSessions = () -> 0;
+        this.actionQueueDepth = () -> 0;
+        this.loadedTemplates = () -> 0;
+        this.loadedTemplateBytes = () -> 0;
+    }
+
+    /**
+     * Gets the metrics of a menu, creating them on first use
+     *
+     * @param menuId The ID of the menu
+     * @return The metrics of the menu
+     */
+    public MenuMetrics menu(String menuId) {
+        MenuMetrics metrics = menus.get(menuId);
+        return metrics != null ? metrics : menus.computeIfAbsent(menuId, MenuMetrics::new);
+    }
+
+    /**
+     * @return The metrics of the menu, or null if nothing was recorded for it yet
+     */
+    public MenuMetrics getMenu(String menuId) {
+        return menus.get(menuId);
+    }
+
+    public Collection<MenuMetrics> getMenus() {
+        return Collections.unmodifiableCollection(menus.values());
+    }
+
+    /**
+     * @return Time taken by full configuration loads
+     */
+    public LatencyHistogram getConfigLoadLatency() {
+        return configLoadLatency;
+    }
+
+    /**
+     * @return Time taken by each placeholder lookup that reached PlaceholderAPI
+     */
+    public LatencyHistogram getPlaceholderLatency() {
+        return placeholderLatency;
+    }
+
+    public void setOpenSessions(IntSupplier openSessions) {
+        this.openSessions = openSessions;
+    }
+
+    public int getOpenSessions() {
+        return openSessions.getAsInt();
+    }
+
+    /**
+     * @return Time menu click actions waited in the action queue before running
+     */
+    public LatencyHistogram getActionDelay() {
+        return actionDelay;
+    }
+
+    public void setActionQueueDepth(IntSupplier actionQueueDepth) {
+        this.actionQueueDepth = actionQueueDepth;
+    }
+
+    public int getActionQueueDepth() {
+        return actionQueueDepth.getAsInt();
+    }
+
+    /**
+     * Records the depth of the action queue after actions were added, keeping the highest depth seen
+     */
+    public void recordActionQueueDepth(int depth) {
+        actionQueueMaxDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    public int getActionQueueMaxDepth() {
+        return actionQueueMaxDepth.get();
+    }
+
+    /**
+     * Counts a menu rendered ahead of time for a player
+     */
+    public void countPrerender() {
+        prerenders.increment();
+    }
+
+    /**
+     * Counts an open that used a menu rendered ahead of time
+     */
+    public void countPrerenderHit() {
+        prerenderHits.increment();
+    }
+
+    public long getPrerenders() {
+        return prerenders.sum();
+    }
+
+    public long getPrerenderHits() {
+        return prerenderHits.sum();
+    }
+
+    /**
+     * Counts a menu compiled when it was first opened, with lazy_menus
+     */
+    public void countTemplateLoad() {
+        templateLoads.increment();
+    }
+
+    /**
+     * Counts a compiled menu dropped from the template cache
+     */
+    public void countTemplateEviction() {
+        templateEvictions.increment();
+    }
+
+    public long getTemplateLoads() {
+        return templateLoads.sum();
+    }
+
+    public long getTemplateEvictions() {
+        return templateEvictions.sum();
+    }
+
+    public void setLoadedTemplates(IntSupplier loadedTemplates, LongSupplier loadedTemplateBytes) {
+        this.loadedTemplates = loadedTemplates;
+        this.loadedTemplateBytes = loadedTemplateBytes;
+    }
+
+    public int getLoadedTemplates() {
+        return loadedTemplates.getAsInt();
+    }
+
+    /**
+     * @return The estimated heap size of the menus compiled on first open, in bytes
+     */
+    public long getLoadedTemplateBytes() {
+        return loadedTemplateBytes.getAsLong();
+    }
+
+    /**
+     * Formats all metrics in the Prometheus text exposition format
+     *
+     * @param placeholderCacheHits The number of placeholder cache hits
+     * @param placeholderCacheMisses The number of placeholder cache misses
+     * @return The metrics text
+     */
+    public String toPrometheus(long placeholderCacheHits, long placeholderCacheMisses) {
+        StringBuilder out = new StringBuilder(4096);
+
+        gauge(out, "spreadsheetmenu_open_sessions", "Players that currently have a menu open", getOpenSessions());
+        gauge(out, "spreadsheetmenu_action_queue_depth", "Menu click actions waiting to run", getActionQueueDepth());
+        gauge(out, "spreadsheetmenu_action_queue_max_depth", "Most menu click actions waiting at once since startup", getActionQueueMaxDepth());
+        counter(out, "spreadsheetmenu_placeholder_cache_hits_total", "Placeholder lookups served from a cache", placeholderCacheHits);
+        counter(out, "spreadsheetmenu_placeholder_cache_misses_total", "Placeholder lookups that called PlaceholderAPI", placeholderCacheMisses);
+        counter(out, "spreadsheetmenu_prerenders_total", "Menus rendered ahead of time in idle tick time", getPrerenders());
+        counter(out, "spreadsheetmenu_prerender_hits_total", "Opens that used a menu rendered ahead of time", getPrerenderHits());
+        gauge(out, "spreadsheetmenu_loaded_templates", "Menus compiled on first open that are in the template cache", getLoadedTemplates());
+        gauge(out, "spreadsheetmenu_loaded_template_bytes", "Estimated heap size of the menus in the template cache", getLoadedTemplateBytes());
+        counter(out, "spreadsheetmenu_template_loads_total", "Menus compiled when they were opened", getTemplateLoads());
+        counter(out, "spreadsheetmenu_template_evictions_total", "Compiled menus dropped from the template cache", getTemplateEvictions());
+
+        header(out, "spreadsheetmenu_config_load_seconds", "Time taken by full configuration loads", "histogram");
+        histogram(out, "spreadsheetmenu_config_load_seconds", "", configLoadLatency);
+        header(out, "spreadsheetmenu_placeholder_seconds", "Time taken by PlaceholderAPI lookups", "histogram");
+        histogram(out, "spreadsheetmenu_placeholder_seconds", "", placeholderLatency);
+        header(out, "spreadsheetmenu_action_delay_seconds", "Time menu click actions waited before running", "histogram");
+        histogram(out, "spreadsheetmenu_action_delay_seconds", "", actionDelay);
+
+        menuCounter(out, "spreadsheetmenu_menu_opens_total", "Menus opened", MenuMetrics::getOpens);
+        menuCounter(out, "spreadsheetmenu_menu_denied_opens_total", "Menu opens denied by a permission or condition", MenuMetrics::getDeniedOpens);
+        menuCounter(out, "spreadsheetmenu_menu_clicks_total", "Clicks in menus", MenuMetrics::getClicks);
+        menuCounter(out, "spreadsheetmenu_menu_dropped_clicks_total", "Clicks ignored by the click rate and debounce limits", MenuMetrics::getDroppedClicks);
+        menuCounter(out, "spreadsheetmenu_menu_reopen_loops_total", "Non-escapeable menus reopened after being closed", MenuMetrics::getReopenLoops);
+        menuCounter(out, "spreadsheetmenu_menu_broken_reopen_loops_total", "Non-escapeable menus ended because they were closed more than reopen_limit times in a second", MenuMetrics::getBrokenReopenLoops);
+
+        menuHistogram(out, "spreadsheetmenu_menu_open_seconds", "Main thread time to check conditions, render and show a menu", MenuMetrics::getOpenLatency);
+        menuHistogram(out, "spreadsheetmenu_menu_render_seconds", "Time to create and render a menu inventory", MenuMetrics::getRenderLatency);
+        menuHistogram(out, "spreadsheetmenu_menu_click_seconds", "Time to handle a menu click", MenuMetrics::getClickLatency);
+
+        return out.toString();
+    }
+
+    private void menuCounter(StringBuilder out, String name, String help, ToLongFunction<MenuMetrics> value) {
+        header(out, name, help, "counter");
+        for (MenuMetrics metrics : menus.values()) {
+            out.append(name).append("{menu=\"").append(escape(metrics.getMenuId())).append("\"} ")
+                .append(value.applyAsLong(metrics)).append('\n');
+        }
+    }
+
+    private void menuHistogram(StringBuilder out, String name, String help, Function<MenuMetrics, LatencyHistogram> histogram) {
+        header(out, name, help, "histogram");
+        for (MenuMetrics metrics : menus.values()) {
+            LatencyHistogram values = histogram.apply(metrics);
+            // Menus that were never used would only add empty series
+            if (values.getCount() > 0) {
+                histogram(out, name, "menu=\"" + escape(metrics.getMenuId()) + "\",", values);
+            }
+        }
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long cumulative = 0;
+        for (int i = 0; i < FIRST_EXPORTED_BUCKET; i++) {
+            cumulative += histogram.getBucketCount(i);
+        }
+        for (int i = FIRST_EXPORTED_BUCKET; i <= LAST_EXPORTED_BUCKET; i++) {
+            cumulative += histogram.getBucketCount(i);
+            out.append(name).append("_bucket{").append(labels).append("le=\"")
+                .append(LatencyHistogram.getUpperBoundNanos(i) / 1e9).append("\"} ").append(cumulative).append('\n');
+        }
+
+        long count = histogram.getCount();
+        String plainLabels = labels.isEmpty() ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+        out.append(name).append("_bucket{").append(labels).append("le=\"+Inf\"} ").append(count).append('\n');
+        out.append(name).append("_sum").append(plainLabels).append(' ').append(histogram.getTotalNanos() / 1e9).append('\n');
+        out.append(name).append("_count").append(plainLabels).append(' ').append(count).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,62 @@
+package com.spreadsheetmenu.plugin.placeholder;
+
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The placeholder values of one player for one render.
+ * A context is created on the main thread; thread-safe placeholders may then be
+ * prefetched into it by worker threads. Anything not prefetched is resolved
+ * on first use, so each placeholder is expanded at most once per render.
+ */
+public class PlaceholderContext {
+    
+    private final Player player;
+    private final PlaceholderService service;
+    private final Map<String, String> values;
+    
+    PlaceholderContext(Player player, PlaceholderService service) {
+        this.player = player;
+        this.service = service;
+        this.values = new ConcurrentHashMap<>();
+    }
+    
+    public Player getPlayer() {
+        return player;
+    }
+    
+    /**
+     * Gets the value of a placeholder, resolving it if it hasn't been resolved yet
+     * 
+     * @param identifier The placeholder identifier without the surrounding %
+     * @return The resolved value
+     */
+    public String resolve(String identifier) {
+        String value = values.get(identifier);
+        if (value != null) {
+            service.recordHit();
+        } else {
+            value = service.resolve(player, identifier);
+            values.put(identifier, value);
+        }
+        return value;
+    }
+    
+    public String resolve(PlaceholderText text) {
+        return text.resolve(this);
+    }
+    
+    boolean isResolved(String identifier) {
+        return values.containsKey(identifier);
+    }
+    
+    /**
+     * Stores a prefetched value, unless the placeholder was already resolved on the main thread
+     * because the prefetch took too long
+     */
+    void put(String identifier, String value) {
+        values.putIfAbsent(identifier, value);
+    }
+}
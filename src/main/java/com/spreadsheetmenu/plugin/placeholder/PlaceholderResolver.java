@@ -0,0 +1,18 @@
+package com.spreadsheetmenu.plugin.placeholder;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Looks up the value of a placeholder for a player.
+ * Normally backed by PlaceholderAPI; benchmarks plug in a local stand-in.
+ */
+@FunctionalInterface
+public interface PlaceholderResolver {
+
+    /**
+     * @param player The player to resolve the placeholder for
+     * @param placeholder The placeholder including the surrounding %
+     * @return The resolved value
+     */
+    String resolve(Player player, String placeholder);
+}
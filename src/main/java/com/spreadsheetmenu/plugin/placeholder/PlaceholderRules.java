@@ -0,0 +1,77 @@
+package com.spreadsheetmenu.plugin.placeholder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per-placeholder settings from placeholders.csv.
+ * A rule matches a placeholder identifier if it is equal to it or is a prefix of it
+ * followed by an underscore (so "vault" matches "vault_eco_balance"). The longest match wins.
+ */
+public class PlaceholderRules {
+    
+    public static final PlaceholderRules DEFAULT = new PlaceholderRules(List.of());
+    
+    private final List<Rule> rules;
+    
+    public PlaceholderRules(List<Rule> rules) {
+        List<Rule> sorted = new ArrayList<>(rules);
+        sorted.sort(Comparator.comparingInt((Rule rule) -> rule.getPlaceholder().length()).reversed());
+        this.rules = List.copyOf(sorted);
+    }
+    
+    /**
+     * @param identifier The placeholder identifier without the surrounding %
+     * @return true if the placeholder may be resolved off the main thread
+     */
+    public boolean isThreadSafe(String identifier) {
+        Rule rule = find(identifier);
+        return rule == null || rule.isThreadSafe();
+    }
+    
+    /**
+     * @param identifier The placeholder identifier without the surrounding %
+     * @return How long a resolved value may be reused across renders in milliseconds,
+     *         0 to only share it within a single render, or -1 to keep it until the player quits
+     */
+    public long getCacheTtl(String identifier) {
+        Rule rule = find(identifier);
+        return rule == null ? 0 : rule.getCacheTtl();
+    }
+    
+    private Rule find(String identifier) {
+        for (Rule rule : rules) {
+            String placeholder = rule.getPlaceholder();
+            if (identifier.startsWith(placeholder)
+                    && (identifier.length() == placeholder.length() || identifier.charAt(placeholder.length()) == '_')) {
+                return rule;
+            }
+        }
+        return null;
+    }
+    
+    public static class Rule {
+        private final String placeholder;
+        private final boolean threadSafe;
+        private final long cacheTtl;
+        
+        public Rule(String placeholder, boolean threadSafe, long cacheTtl) {
+            this.placeholder = placeholder;
+            this.threadSafe = threadSafe;
+            this.cacheTtl = cacheTtl;
+        }
+        
+        public String getPlaceholder() {
+            return placeholder;
+        }
+        
+        public boolean isThreadSafe() {
+            return threadSafe;
+        }
+        
+        public long getCacheTtl() {
+            return cacheTtl;
+        }
+    }
+}
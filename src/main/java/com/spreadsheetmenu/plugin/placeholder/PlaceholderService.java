@@ -0,0 +1,215 @@
+package com.spreadsheetmenu.plugin.placeholder;
+
+import com.spreadsheetmenu.plugin.SpreadsheetMenu;
+import me.clip.placeholderapi.PlaceholderAPI;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Resolves PlaceholderAPI placeholders for menus.
+ * Placeholders marked thread-safe in placeholders.csv can be prefetched on virtual threads,
+ * so slow expansions (economy, stats, databases) don't hold up the main thread.
+ * Values of placeholders with a cache_ttl are kept per player and shared across menus and slots.
+ */
+public class PlaceholderService {
+
+    private static final long FOREVER = Long.MIN_VALUE;
+
+    private final SpreadsheetMenu plugin;
+    private volatile PlaceholderResolver resolver;
+    private final ExecutorService executor;
+    private final Map<UUID, Map<String, CachedValue>> playerCaches;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    public PlaceholderService(SpreadsheetMenu plugin) {
+        this.plugin = plugin;
+        this.resolver = Bukkit.getPluginManager().isPluginEnabled("PlaceholderAPI") ? PlaceholderAPI::setPlaceholders : null;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.playerCaches = new ConcurrentHashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Creates a context for one render. Must be called on the main thread.
+     *
+     * @param player The player to resolve placeholders for
+     * @return A new, empty context
+     */
+    public PlaceholderContext createContext(Player player) {
+        return new PlaceholderContext(player, this);
+    }
+
+    /**
+     * Resolves a single placeholder on the calling thread, using the player's cached value
+     * if the placeholder has a cache_ttl and the value hasn't expired
+     *
+     * @param player The player to resolve the placeholder for
+     * @param identifier The placeholder identifier without the surrounding %
+     * @return The resolved value, or the raw placeholder if PlaceholderAPI is not installed
+     */
+    public String resolve(Player player, String identifier) {
+        String placeholder = "%" + identifier + "%";
+        PlaceholderResolver resolver = this.resolver;
+        if (resolver == null) {
+            return placeholder;
+        }
+
+        long ttl = plugin.getConfigManager().getPlaceholderRules().getCacheTtl(identifier);
+        if (ttl == 0) {
+            misses.increment();
+            return call(resolver, player, placeholder);
+        }
+
+        Map<String, CachedValue> cache = playerCaches.computeIfAbsent(player.getUniqueId(), id -> new ConcurrentHashMap<>());
+        long now = System.nanoTime();
+        CachedValue cached = cache.get(identifier);
+        if (cached != null && (cached.expiresAt == FOREVER || now - cached.expiresAt < 0)) {
+            hits.increment();
+            return cached.value;
+        }
+
+        misses.increment();
+        String value = call(resolver, player, placeholder);
+        if (!player.isOnline()) {
+            // Don't recreate the cache of a player who quit while this was resolving
+            playerCaches.remove(player.getUniqueId());
+            return value;
+        }
+        long expiresAt = ttl < 0 ? FOREVER : now + ttl * 1_000_000L;
+        cache.put(identifier, new CachedValue(value, expiresAt));
+        return value;
+    }
+
+    /**
+     * Calls the resolver and records how long it took
+     */
+    private String call(PlaceholderResolver resolver, Player player, String placeholder) {
+        long start = System.nanoTime();
+        try {
+            return resolver.resolve(player, placeholder);
+        } finally {
+            plugin.getMetrics().getPlaceholderLatency().recordSince(start);
+        }
+    }
+
+    /**
+     * Drops all cached placeholder values of a player
+     *
+     * @param playerId The UUID of the player
+     */
+    public void invalidate(UUID playerId) {
+        playerCaches.remove(playerId);
+    }
+
+    /**
+     * Drops the cached values of every player, e.g. after the cache rules were reloaded
+     */
+    public void invalidateAll() {
+        playerCaches.clear();
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    /**
+     * @return How many placeholder lookups were served from a render context or player cache
+     */
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How many placeholder lookups had to call PlaceholderAPI
+     */
+    public long getCacheMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Resolves all thread-safe placeholders of the given set on worker threads.
+     * Placeholders that are not thread-safe, fail off the main thread or are not resolved
+     * within placeholder_timeout_ms are left for the context to resolve when they are first
+     * used on the main thread.
+     *
+     * @param context The context to fill
+     * @param identifiers The placeholders the render is going to need
+     * @return A future that completes when all thread-safe placeholders are resolved,
+     *         or when the timeout is reached
+     */
+    public CompletableFuture<Void> prefetch(PlaceholderContext context, Collection<String> identifiers) {
+        PlaceholderRules rules = plugin.getConfigManager().getPlaceholderRules();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (String identifier : identifiers) {
+            if (!rules.isThreadSafe(identifier) || context.isResolved(identifier)) {
+                continue;
+            }
+
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    context.put(identifier, resolve(context.getPlayer(), identifier));
+                } catch (Exception e) {
+                    plugin.getLogger().log(Level.FINE, "Placeholder %" + identifier + "% failed off the main thread, it will be resolved synchronously", e);
+                }
+            }, executor));
+        }
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        long timeout = plugin.getConfigManager().getSettings().getLong("placeholder_timeout_ms", 1000);
+        // A hung expansion must not keep the menu from opening; late values are ignored by the context
+        return timeout > 0 ? all.completeOnTimeout(null, timeout, TimeUnit.MILLISECONDS) : all;
+    }
+
+    /**
+     * @return true if menus should prefetch placeholders asynchronously before opening
+     */
+    public boolean isAsyncEnabled() {
+        return resolver != null && plugin.getConfigManager().getSettings().getBoolean("async_placeholders", true);
+    }
+
+    public boolean isPlaceholderApiEnabled() {
+        return resolver != null;
+    }
+
+    /**
+     * Replaces how placeholder values are looked up, e.g. with a stand-in when benchmarking
+     * without PlaceholderAPI. Drops all cached values.
+     *
+     * @param resolver The new resolver, or null to leave placeholders unresolved
+     */
+    public void setResolver(PlaceholderResolver resolver) {
+        this.resolver = resolver;
+        playerCaches.clear();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        playerCaches.clear();
+    }
+
+    private static final class CachedValue {
+        private final String value;
+        private final long expiresAt;
+
+        CachedValue(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
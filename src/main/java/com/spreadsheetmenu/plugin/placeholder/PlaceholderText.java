@@ -0,0 +1,91 @@
+package com.spreadsheetmenu.plugin.placeholder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A piece of text that may contain %placeholder% content.
+ * The text is split into literal parts and placeholder identifiers once when it is compiled,
+ * so static text never reaches PlaceholderAPI and each placeholder can be resolved on its own.
+ */
+public final class PlaceholderText {
+    
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("%([^%\\s]+)%");
+    
+    private final String text;
+    private final String[] literals;
+    private final String[] identifiers;
+    
+    private PlaceholderText(String text, String[] literals, String[] identifiers) {
+        this.text = text;
+        this.literals = literals;
+        this.identifiers = identifiers;
+    }
+    
+    public static PlaceholderText of(String text) {
+        if (text.indexOf('%') < 0) {
+            return new PlaceholderText(text, new String[] { text }, new String[0]);
+        }
+        
+        List<String> literals = new ArrayList<>();
+        List<String> identifiers = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(text);
+        int last = 0;
+        while (matcher.find()) {
+            literals.add(text.substring(last, matcher.start()));
+            identifiers.add(matcher.group(1));
+            last = matcher.end();
+        }
+        literals.add(text.substring(last));
+        
+        return new PlaceholderText(text, literals.toArray(new String[0]), identifiers.toArray(new String[0]));
+    }
+    
+    /**
+     * @param text The text to check
+     * @return true if the text contains at least one %placeholder%
+     */
+    public static boolean containsPlaceholders(String text) {
+        return text.indexOf('%') >= 0 && PLACEHOLDER_PATTERN.matcher(text).find();
+    }
+    
+    /**
+     * Resolves the text using the values of the given context
+     * 
+     * @param context The placeholder context of the player the text is for
+     * @return The expanded text, or the raw text if it contains no placeholders
+     */
+    public String resolve(PlaceholderContext context) {
+        if (identifiers.length == 0) {
+            return text;
+        }
+        
+        StringBuilder builder = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < identifiers.length; i++) {
+            builder.append(literals[i]).append(context.resolve(identifiers[i]));
+        }
+        return builder.append(literals[identifiers.length]).toString();
+    }
+    
+    public String getText() {
+        return text;
+    }
+    
+    public boolean isDynamic() {
+        return identifiers.length > 0;
+    }
+    
+    /**
+     * @return The identifiers (without the surrounding %) of the placeholders in this text
+     */
+    public List<String> getIdentifiers() {
+        return List.of(identifiers);
+    }
+    
+    @Override
+    public String toString() {
+        return text;
+    }
+}